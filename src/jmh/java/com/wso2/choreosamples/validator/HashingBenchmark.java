@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmarks the package hashing of {@link CommonUtils#generateHashString(String, FingerprintAlgorithm)}.
+ */
+@State(Scope.Benchmark)
+public class HashingBenchmark {
+
+    @Param({"50", "500"})
+    public int filesPerPackage;
+
+    @Param({"small", "mixed"})
+    public String sizeDistribution;
+
+    @Param({"MD5", "XXH64"})
+    public String algorithm;
+
+    private Path root;
+    private String packageDir;
+    private FingerprintAlgorithm fingerprintAlgorithm;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("hashing-benchmark");
+        SyntheticSampleTree.generate(root, 1, filesPerPackage, sizeDistribution, 2);
+        packageDir = SyntheticSampleTree.firstPackage(root).toString();
+        fingerprintAlgorithm = FingerprintAlgorithms.forName(algorithm);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticSampleTree.delete(root);
+    }
+
+    @Benchmark
+    public String generateHashString() throws IOException {
+        return CommonUtils.generateHashString(packageDir, fingerprintAlgorithm);
+    }
+}
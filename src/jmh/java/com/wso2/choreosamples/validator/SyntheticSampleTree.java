@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.PACKAGE_MD;
+
+/**
+ * Generates synthetic sample trees for the benchmarks. Trees are generated from a fixed seed so every run of a
+ * benchmark works on the same content.
+ */
+public class SyntheticSampleTree {
+
+    private static final long SEED = 42;
+
+    /**
+     * Generate a sample tree.
+     *
+     * @param root             directory to generate the tree in
+     * @param packageCount     number of Ballerina packages
+     * @param filesPerPackage  number of source files in each package
+     * @param sizeDistribution file size distribution, one of {@code small}, {@code mixed} or {@code large}
+     * @param targetDepth      depth of the build output directories generated inside each package
+     * @throws IOException if an error occurred while writing the tree
+     */
+    public static void generate(Path root, int packageCount, int filesPerPackage, String sizeDistribution,
+                                int targetDepth) throws IOException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < packageCount; i++) {
+            Path packageDir = root.resolve("samples").resolve("group" + (i % 10)).resolve("package" + i);
+            Files.createDirectories(packageDir.resolve("modules").resolve("util"));
+            Files.writeString(packageDir.resolve(BALLERINA_TOML), "[package]\norg = \"wso2\"\nname = \"package" + i
+                    + "\"\nversion = \"0.1.0\"\n\n[build-options]\nobservabilityIncluded = true\n");
+            Files.writeString(packageDir.resolve(PACKAGE_MD), "# Package " + i + "\n");
+            for (int j = 0; j < filesPerPackage; j++) {
+                Path dir = j % 4 == 0 ? packageDir.resolve("modules").resolve("util") : packageDir;
+                Files.write(dir.resolve("file" + j + ".bal"), content(random, fileSize(random, sizeDistribution)));
+            }
+            Path targetDir = packageDir.resolve("target");
+            for (int depth = 0; depth < targetDepth; depth++) {
+                targetDir = targetDir.resolve("level" + depth);
+                Files.createDirectories(targetDir);
+                Files.write(targetDir.resolve("output.jar"), content(random, 4096));
+            }
+        }
+    }
+
+    /**
+     * Path of the first package of a tree generated by {@link #generate(Path, int, int, String, int)}.
+     *
+     * @param root directory the tree was generated in
+     * @return path to the package
+     */
+    public static Path firstPackage(Path root) {
+        return root.resolve("samples").resolve("group0").resolve("package0");
+    }
+
+    /**
+     * Delete a generated tree.
+     *
+     * @param root directory the tree was generated in
+     * @throws IOException if an error occurred while deleting the tree
+     */
+    public static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static int fileSize(Random random, String sizeDistribution) {
+        switch (sizeDistribution) {
+            case "small":
+                return 512 + random.nextInt(4 * 1024);
+            case "large":
+                return 256 * 1024 + random.nextInt(4 * 1024 * 1024);
+            case "mixed":
+                // Mostly source files with an occasional large resource.
+                return random.nextInt(20) == 0 ? 1024 * 1024 + random.nextInt(4 * 1024 * 1024)
+                        : 512 + random.nextInt(16 * 1024);
+            default:
+                throw new IllegalArgumentException("Unknown file size distribution: " + sizeDistribution);
+        }
+    }
+
+    private static byte[] content(Random random, int size) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        return content;
+    }
+}
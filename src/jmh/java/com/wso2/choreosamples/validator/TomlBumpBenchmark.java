@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmarks {@link CommonUtils#bumpBallerinaTomlVersion(String)}. Each invocation bumps the patch version of the
+ * same package once more.
+ */
+@State(Scope.Benchmark)
+public class TomlBumpBenchmark {
+
+    private Path root;
+    private String packageDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("toml-bump-benchmark");
+        SyntheticSampleTree.generate(root, 1, 1, "small", 0);
+        packageDir = SyntheticSampleTree.firstPackage(root).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticSampleTree.delete(root);
+    }
+
+    @Benchmark
+    public void bumpBallerinaTomlVersion() throws IOException, ValidatorException {
+        CommonUtils.bumpBallerinaTomlVersion(packageDir);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import com.moandjiezana.toml.Toml;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Renders structured files in a canonical form: keys sorted, numbers normalized, strings quoted and comments and
+ * formatting dropped. Values keep their type, so an integer never equals a float or a string with the same digits.
+ * Every document of a multi-document YAML file is part of the canonical form. Kept apart from
+ * {@link SemanticFingerprint} so that the parsers are only loaded when a structured file is actually canonicalized.
+ */
+class Canonicalizer {
+
+    /**
+     * Canonicalize the content of a structured file.
+     *
+     * @param fileType type of the file
+     * @param content  raw file content
+     * @return the canonical form, or null if the content can't be parsed as the given type
+     */
+    static byte[] canonicalize(FileType fileType, byte[] content) {
+        Object value;
+        try {
+            switch (fileType) {
+                case YAML:
+                case YML:
+                    return canonicalizeDocuments(Yaml.mapper().readerFor(Object.class).readValues(content).readAll());
+                case JSON:
+                    value = Json.mapper().readValue(content, Object.class);
+                    break;
+                case TOML:
+                    value = new Toml().read(new String(content, StandardCharsets.UTF_8)).toMap();
+                    break;
+                case PROPERTIES:
+                    Properties properties = new Properties();
+                    properties.load(new ByteArrayInputStream(content));
+                    value = properties;
+                    break;
+                default:
+                    return null;
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        StringBuilder canonical = new StringBuilder();
+        write(value, canonical);
+        return canonical.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Canonicalize the documents of a YAML file, one line per document. A canonical value never holds a raw line
+     * break, so two documents can't render the same as one.
+     */
+    private static byte[] canonicalizeDocuments(List<Object> documents) {
+        if (documents.isEmpty()) {
+            return null;
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (Object document : documents) {
+            if (canonical.length() > 0) {
+                canonical.append('\n');
+            }
+            write(document, canonical);
+        }
+        return canonical.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(Object value, StringBuilder out) {
+        if (value instanceof Map) {
+            // The parsers only produce string keys, rendered as quoted strings. Any other key is rendered like a value,
+            // so it can't collide with the string of the same text.
+            Map<String, Object> sorted = new TreeMap<>();
+            ((Map<?, ?>) value).forEach((key, entry) -> {
+                StringBuilder renderedKey = new StringBuilder();
+                write(key, renderedKey);
+                sorted.put(renderedKey.toString(), entry);
+            });
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                out.append(entry.getKey());
+                out.append(':');
+                write(entry.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(element, out);
+            }
+            out.append(']');
+        } else if (value instanceof Number) {
+            out.append(normalize((Number) value));
+        } else if (value instanceof Boolean || value == null) {
+            out.append(value);
+        } else if (value instanceof Date) {
+            writeString(((Date) value).toInstant().toString(), out);
+        } else {
+            writeString(value.toString(), out);
+        }
+    }
+
+    /**
+     * Render numbers by value, so that e.g. 1.50 and 1.5 are the same. Floats always keep a fraction, since a
+     * Ballerina config of type int rejects 1.0, so 1 and 1.0 are different values.
+     */
+    private static String normalize(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short
+                || number instanceof Byte || number instanceof BigInteger) {
+            return number.toString();
+        }
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return Double.toString(value);
+            }
+            number = new BigDecimal(Double.toString(value));
+        }
+        if (number instanceof BigDecimal) {
+            BigDecimal decimal = ((BigDecimal) number).stripTrailingZeros();
+            String plain = decimal.signum() == 0 ? "0" : decimal.toPlainString();
+            return plain.indexOf('.') < 0 ? plain + ".0" : plain;
+        }
+        return number.toString();
+    }
+
+    private static void writeString(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static com.wso2.choreosamples.validator.Constants.FINGERPRINT_ALGORITHM_KEY;
+
+/**
+ * Detects the changed Ballerina packages of a project against any number of hash properties files at once.
+ * All properties files are answered from a single package discovery and a single hash of each package per
+ * fingerprint algorithm in use. The detector keeps no mutable state between calls, so several detections can run
+ * concurrently in one JVM.
+ *
+ * <p>When a git base is given, the local git repository decides which packages may have changed since the base:
+ * packages without changes are reported unchanged without reading their content. Packages changed in commits or in
+ * the working tree are still hashed, since a commit may have updated the hash properties file along with the package,
+ * or the change may not affect the fingerprint, e.g. a file mode change or a reformatting under a semantic
+ * fingerprint. This assumes the hash properties files were up to date at the base.
+ */
+public class ChangeDetector {
+
+    private final Path baseDir;
+    private final List<String> manifestNames;
+    private final int parallelism;
+    private final String gitBaseRef;
+
+    /**
+     * Create a change detector.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestNames  names of the hash properties files, e.g. service.properties and integration.properties
+     * @param parallelism    maximum number of packages hashed concurrently, 1 hashes the packages sequentially
+     */
+    public ChangeDetector(Path projectBaseDir, List<String> manifestNames, int parallelism) {
+        this(projectBaseDir, manifestNames, parallelism, null);
+    }
+
+    /**
+     * Create a change detector backed by the local git repository of the project.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestNames  names of the hash properties files, e.g. service.properties and integration.properties
+     * @param parallelism    maximum number of packages hashed concurrently, 1 hashes the packages sequentially
+     * @param gitBaseRef     commit, branch or tag the hash properties files were last updated at, null to hash the
+     *                       content of every package
+     */
+    public ChangeDetector(Path projectBaseDir, List<String> manifestNames, int parallelism, String gitBaseRef) {
+        this.baseDir = projectBaseDir;
+        this.manifestNames = Collections.unmodifiableList(new ArrayList<>(manifestNames));
+        this.parallelism = parallelism;
+        this.gitBaseRef = gitBaseRef;
+    }
+
+    /**
+     * Find the packages changed against each of the hash properties files.
+     *
+     * @return changed packages of each properties file
+     * @throws IOException if an error occurred while loading the properties files or accessing the packages
+     */
+    public ChangeReport detect() throws IOException {
+        return detect(PackageIndex.load(baseDir).getPackageDirs());
+    }
+
+    /**
+     * Find which of the given packages changed against each of the hash properties files.
+     *
+     * @param packageDirs paths of the Ballerina packages to check, e.g. the packages assigned to a shard
+     * @return changed packages of each properties file
+     * @throws IOException if an error occurred while loading the properties files or accessing the packages
+     */
+    public ChangeReport detect(List<String> packageDirs) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.CHANGE_DETECTION)) {
+            FileStatCache hashCache = FileStatCache.load(baseDir);
+            ChangeReport report = detectChanges(packageDirs, hashCache);
+            hashCache.save();
+            return report;
+        }
+    }
+
+    /**
+     * Find which of the given packages changed, hashing through the given cache. The cache is left for the caller
+     * to save, e.g. to the cache file of a shard.
+     *
+     * @param packageDirs paths of the Ballerina packages to check
+     * @param hashCache   hash cache of the project
+     * @return changed packages of each properties file
+     * @throws IOException if an error occurred while loading the properties files or accessing the packages
+     */
+    ChangeReport detect(List<String> packageDirs, FileStatCache hashCache) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.CHANGE_DETECTION)) {
+            return detectChanges(packageDirs, hashCache);
+        }
+    }
+
+    private ChangeReport detectChanges(List<String> packageDirs, FileStatCache hashCache) throws IOException {
+        Map<String, UnaryOperator<String>> manifests = new LinkedHashMap<>();
+        for (String manifestName : manifestNames) {
+            manifests.put(manifestName, openManifest(manifestName));
+        }
+        Map<String, GitChangeSource.PackageState> gitStates = gitBaseRef != null
+                ? new GitChangeSource(baseDir, gitBaseRef).classifyPackages(packageDirs) : Collections.emptyMap();
+        Map<String, Set<String>> changedManifests = new ConcurrentHashMap<>();
+        List<String> changedPackages = ParallelChangeDetector.filterChangedPackages(packageDirs, packageDir -> {
+            Set<String> changedIn = changedManifests(packageDir, manifests, hashCache,
+                    gitStates.getOrDefault(packageDir, GitChangeSource.PackageState.DIRTY));
+            changedManifests.put(packageDir, changedIn);
+            return !changedIn.isEmpty();
+        }, parallelism);
+        ValidatorMetrics.increment(ValidatorMetrics.Counter.PACKAGES_CHANGED, changedPackages.size());
+
+        Map<String, List<String>> updatedPackages = new LinkedHashMap<>();
+        for (String manifestName : manifestNames) {
+            List<String> updated = new ArrayList<>();
+            for (String packageDir : packageDirs) {
+                if (changedManifests.get(packageDir).contains(manifestName)) {
+                    updated.add(packageDir);
+                }
+            }
+            updatedPackages.put(manifestName, Collections.unmodifiableList(updated));
+        }
+        return new ChangeReport(updatedPackages);
+    }
+
+    /**
+     * Update/Add the hash of the changed/new packages in the given hash properties file.
+     *
+     * @param manifestName             name of the hash properties file
+     * @param updatedBallerinaPackages path list of updated ballerina packages
+     * @throws IOException if an error occurred while accessing files inside given path
+     */
+    public void updateHashes(String manifestName, List<String> updatedBallerinaPackages) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.UPDATE_HASHES)) {
+            storeHashes(manifestName, updatedBallerinaPackages);
+        }
+    }
+
+    private void storeHashes(String manifestName, List<String> updatedBallerinaPackages) throws IOException {
+        ManifestStore manifest = loadStore(manifestName);
+        FileStatCache hashCache = FileStatCache.load(baseDir);
+        FingerprintAlgorithm algorithm = FingerprintAlgorithms.selectedAlgorithm(manifest);
+        for (String path : updatedBallerinaPackages) {
+            String relativeFilePath = baseDir.relativize(Paths.get(path)).toString();
+            String newHash = IncrementalHasher.generateHashString(baseDir.resolve(relativeFilePath).toString(),
+                    hashCache, algorithm);
+            manifest.put(relativeFilePath, FingerprintAlgorithms.format(algorithm, newHash));
+        }
+        migrateFingerprints(manifest, algorithm, hashCache);
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.PROPERTIES_IO)) {
+            manifest.save();
+        }
+        hashCache.save();
+    }
+
+    /**
+     * Append the hash of the changed/new packages to the journal of the given hash properties file instead of
+     * rewriting the file. The journal is folded into the file once it has grown, or by the next
+     * {@link #updateHashes(String, List)}.
+     *
+     * @param manifestName             name of the hash properties file
+     * @param updatedBallerinaPackages path list of updated ballerina packages
+     * @throws IOException if an error occurred while accessing files inside given path
+     */
+    public void appendHashes(String manifestName, List<String> updatedBallerinaPackages) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.UPDATE_HASHES)) {
+            ManifestStore manifest = loadStore(manifestName);
+            FileStatCache hashCache = FileStatCache.load(baseDir);
+            FingerprintAlgorithm algorithm = FingerprintAlgorithms.selectedAlgorithm(manifest);
+            Map<String, String> newHashes = new LinkedHashMap<>();
+            for (String path : updatedBallerinaPackages) {
+                String newHash = IncrementalHasher.generateHashString(path, hashCache, algorithm);
+                newHashes.put(baseDir.relativize(Paths.get(path)).toString(),
+                        FingerprintAlgorithms.format(algorithm, newHash));
+            }
+            // A single journal write and sync for the whole batch.
+            manifest.appendAll(newHashes);
+            hashCache.save();
+        }
+    }
+
+    private Set<String> changedManifests(String packageDir, Map<String, UnaryOperator<String>> manifests,
+                                         FileStatCache hashCache, GitChangeSource.PackageState gitState)
+            throws IOException {
+        String relativePath = baseDir.relativize(Paths.get(packageDir)).toString();
+        Map<FingerprintAlgorithm, String> currentHashes = new LinkedHashMap<>();
+        Set<String> changedIn = new LinkedHashSet<>();
+        for (Map.Entry<String, UnaryOperator<String>> manifest : manifests.entrySet()) {
+            String oldHash = manifest.getValue().apply(relativePath);
+            if (oldHash == null) {
+                changedIn.add(manifest.getKey());
+                continue;
+            }
+            // A package changed in git is confirmed by its hash, its entry may have been updated since the base.
+            if (gitState == GitChangeSource.PackageState.UNCHANGED) {
+                continue;
+            }
+            // Compare with the algorithm which produced the stored entry, so switching algorithms is not a change.
+            FingerprintAlgorithm algorithm = FingerprintAlgorithms.algorithmOf(oldHash);
+            String currentHash = currentHashes.get(algorithm);
+            if (currentHash == null) {
+                currentHash = FingerprintAlgorithms.format(algorithm,
+                        IncrementalHasher.generateHashString(packageDir, hashCache, algorithm));
+                currentHashes.put(algorithm, currentHash);
+            }
+            if (!oldHash.equalsIgnoreCase(currentHash)) {
+                changedIn.add(manifest.getKey());
+            }
+        }
+        return changedIn;
+    }
+
+    /**
+     * Rehash the unchanged entries produced by another algorithm with the selected algorithm.
+     * Entries whose package no longer matches the stored fingerprint are left for change detection to report.
+     */
+    private void migrateFingerprints(ManifestStore manifest, FingerprintAlgorithm algorithm,
+                                     FileStatCache hashCache) throws IOException {
+        for (Map.Entry<String, String> entry : new ArrayList<>(manifest.getEntries().entrySet())) {
+            String relativeFilePath = entry.getKey();
+            String fingerprint = entry.getValue();
+            Path packagePath = baseDir.resolve(relativeFilePath);
+            // An empty or unknown entry can't match the package, so it's left for change detection to report.
+            if (relativeFilePath.equals(FINGERPRINT_ALGORITHM_KEY) || !FingerprintAlgorithms.isComparable(fingerprint)
+                    || FingerprintAlgorithms.algorithmOf(fingerprint) == algorithm || !Files.isDirectory(packagePath)) {
+                continue;
+            }
+            FingerprintAlgorithm oldAlgorithm = FingerprintAlgorithms.algorithmOf(fingerprint);
+            String oldHash = FingerprintAlgorithms.format(oldAlgorithm,
+                    IncrementalHasher.generateHashString(packagePath.toString(), hashCache, oldAlgorithm));
+            if (oldHash.equalsIgnoreCase(fingerprint)) {
+                String newHash = IncrementalHasher.generateHashString(packagePath.toString(), hashCache, algorithm);
+                manifest.put(relativeFilePath, FingerprintAlgorithms.format(algorithm, newHash));
+            }
+        }
+    }
+
+    /**
+     * Open a hash properties file for the point lookups of detection, so large manifests are answered by their index.
+     */
+    private UnaryOperator<String> openManifest(String manifestName) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.PROPERTIES_IO)) {
+            return ManifestStore.openLookup(baseDir.resolve(manifestName));
+        }
+    }
+
+    private ManifestStore loadStore(String manifestName) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.PROPERTIES_IO)) {
+            return ManifestStore.load(baseDir.resolve(manifestName));
+        }
+    }
+
+    /**
+     * Changed packages of each hash properties file of a detection.
+     */
+    public static class ChangeReport {
+        private final Map<String, List<String>> updatedPackages;
+
+        ChangeReport(Map<String, List<String>> updatedPackages) {
+            this.updatedPackages = Collections.unmodifiableMap(updatedPackages);
+        }
+
+        /**
+         * Get the packages changed against the given hash properties file.
+         *
+         * @param manifestName name of the hash properties file
+         * @return list of ballerina package paths, in discovery order
+         */
+        public List<String> getUpdatedPackages(String manifestName) {
+            List<String> packages = updatedPackages.get(manifestName);
+            if (packages == null) {
+                throw new IllegalArgumentException("Properties file not part of the detection: " + manifestName);
+            }
+            return packages;
+        }
+
+        /**
+         * Get the changed packages of every hash properties file.
+         *
+         * @return changed packages keyed by the properties file name
+         */
+        public Map<String, List<String>> getUpdatedPackages() {
+            return updatedPackages;
+        }
+    }
+}
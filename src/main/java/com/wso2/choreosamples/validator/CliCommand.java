@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+/**
+ * Subcommand of the {@link ValidatorCli}. Implementations only reach their libraries from {@link #run}, so a command
+ * doesn't pay the class loading of the libraries used by the other commands.
+ */
+public interface CliCommand {
+
+    /**
+     * Usage line of the command, without the command name.
+     *
+     * @return usage of the arguments and options
+     */
+    String getUsage();
+
+    /**
+     * Run the command.
+     *
+     * @param arguments parsed command line arguments
+     * @return process exit code
+     * @throws Exception if the command failed
+     */
+    int run(ValidatorCli.Arguments arguments) throws Exception;
+}
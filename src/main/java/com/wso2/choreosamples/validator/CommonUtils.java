@@ -18,53 +18,35 @@
 
 package com.wso2.choreosamples.validator;
 
-import com.moandjiezana.toml.Toml;
-import com.moandjiezana.toml.TomlWriter;
-import org.apache.commons.codec.digest.DigestUtils;
-
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.FileNotFoundException;
-import java.io.SequenceInputStream;
-import java.io.FileInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Vector;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
-import static com.wso2.choreosamples.validator.Constants.PACKAGE_MD;
-import static com.wso2.choreosamples.validator.Constants.PACKAGE;
-import static com.wso2.choreosamples.validator.Constants.VERSION;
+import static com.wso2.choreosamples.validator.Constants.DEPENDENCIES_TOML;
 
 public class CommonUtils {
     /**
      * Validate the existence of documentation related files.
      *
      * @param packagePath path to Ballerina package
-     * @throws BuildPrecheckException if failed to pass the prechecks
+     * @throws BuildPrecheckException if failed to pass the prechecks, with every violation of the package
      */
     public static void executePrechecks(String packagePath) throws BuildPrecheckException {
-        validateMdFiles(packagePath);
-    }
-
-    private static void validateMdFiles(String packagePath) throws BuildPrecheckException {
-        String packageMdFilePath = packagePath + File.separator + PACKAGE_MD;
-        File packageMdFile = new File(packageMdFilePath);
-
-        if (!packageMdFile.exists()) {
-            throw new BuildPrecheckException(PACKAGE_MD + " doesn't exist in package " + packagePath);
-        } else if (packageMdFile.length() == 0) {
-            throw new BuildPrecheckException(PACKAGE_MD + " is empty in package " + packagePath);
+        List<String> violations;
+        try {
+            violations = PrecheckEngine.withDefaultRules().check(packagePath);
+        } catch (IOException e) {
+            throw new BuildPrecheckException("Unable to read package " + packagePath + ": " + e.getMessage());
+        }
+        if (!violations.isEmpty()) {
+            throw new BuildPrecheckException(String.join(System.lineSeparator(), violations));
         }
     }
 
@@ -76,32 +58,91 @@ public class CommonUtils {
      * @throws IOException On an error while reading files
      */
     public static String generateHashString(String directoryPath) throws IOException {
+        return generateHashString(directoryPath, FingerprintAlgorithms.MD5);
+    }
+
+    /**
+     * Generate the fingerprint of a connector package with the given algorithm
+     *
+     * @param directoryPath Path to the connector package
+     * @param algorithm     fingerprint algorithm
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    public static String generateHashString(String directoryPath, FingerprintAlgorithm algorithm)
+            throws IOException {
         File dirToHash = new File(directoryPath);
         assert (dirToHash.isDirectory());
-        Vector<FileInputStream> fileStreams = new Vector<>();
-        collectInputStreams(dirToHash, fileStreams);
-        SequenceInputStream seqStream = new SequenceInputStream(fileStreams.elements());
-        String md5Hash = DigestUtils.md5Hex(seqStream);
-        seqStream.close();
-        return md5Hash;
+        List<File> files = new ArrayList<>();
+        collectFiles(dirToHash, files);
+        ValidatorMetrics.increment(ValidatorMetrics.Counter.FILES_VISITED, files.size());
+        return generateHashString(files, algorithm);
+    }
+
+    /**
+     * Generate the fingerprint of the given package files
+     *
+     * @param files     package files in the hashing order
+     * @param algorithm fingerprint algorithm
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    static String generateHashString(List<File> files, FingerprintAlgorithm algorithm) throws IOException {
+        // The incremental hasher times its packages itself and doesn't hash through here, so nothing is timed twice.
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.HASHING)) {
+            return algorithm.hash(files);
+        }
     }
 
-    private static void collectInputStreams(File dir, List<FileInputStream> foundStreams) throws FileNotFoundException {
+    /**
+     * Collect the files of a package in the order they contribute to the package hash. The files are only counted as
+     * visited by the callers which hash them.
+     *
+     * @param dir        directory to collect files from
+     * @param foundFiles list to add the found files to
+     */
+    static void collectFiles(File dir, List<File> foundFiles) {
         File[] fileList = dir.listFiles();
         assert fileList != null;
         // Sort by name - This ensures reproducible sorting mechanism.
         Arrays.sort(fileList, Comparator.comparing(File::getName));
         for (File f : fileList) {
-            if (!f.getName().startsWith(".") && !f.getName().startsWith("target") && !f.getName().equals("Dependencies.toml")) {
+            if (!isExcluded(f.getName())) {
                 if (f.isDirectory()) {
-                    collectInputStreams(f, foundStreams);
+                    collectFiles(f, foundFiles);
                 } else {
-                    foundStreams.add(new FileInputStream(f));
+                    foundFiles.add(f);
                 }
             }
         }
     }
 
+    /**
+     * Check whether a file or directory of a package is excluded from the package hash.
+     *
+     * @param fileName name of the file or directory
+     * @return true for hidden files, build output and Dependencies.toml
+     */
+    static boolean isExcluded(String fileName) {
+        return fileName.startsWith(".") || fileName.startsWith("target") || fileName.equals(DEPENDENCIES_TOML);
+    }
+
+    /**
+     * Give a file the POSIX permissions of another file, e.g. a temp file which replaces it. Nothing is copied on file
+     * systems without POSIX permissions or when the other file doesn't exist.
+     *
+     * @param source file to take the permissions from
+     * @param target file to set the permissions of
+     * @throws IOException if an error occurred while reading or setting the permissions
+     */
+    static void copyPermissions(Path source, Path target) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if (view == null || !Files.exists(source)) {
+            return;
+        }
+        Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+    }
+
     /**
      * Increment the TOML file version of the given package
      *
@@ -110,28 +151,7 @@ public class CommonUtils {
      * @throws ValidatorException if version of the Ballerina.toml file is invalid
      */
     public static void bumpBallerinaTomlVersion(String packagePath) throws IOException, ValidatorException {
-        String filePath = packagePath + File.separator + BALLERINA_TOML;
-        try (InputStream input = new FileInputStream(filePath)) {
-            Toml toml = new Toml().read(input);
-            String version = toml.getTable(PACKAGE).getString(VERSION);
-//            String semVer = version.replace(SNAPSHOT, EMPTY_STRING);
-            String[] semVerPartitions = version.split("\\.");
-            if (semVerPartitions.length != 3) {
-                throw new ValidatorException("Invalid version pattern");
-            } else {
-                int patchVersion = Integer.parseInt(semVerPartitions[2]);
-                String updatedVersion = String.format("%s.%s.%s", semVerPartitions[0], semVerPartitions[1], (patchVersion + 1));
-//                String updatedVersionWithSnapshotAdded = updatedVersion + SNAPSHOT;
-                TomlWriter tomlWriter = new TomlWriter();
-                Map<String, Object> currentTomlFileMap = toml.toMap();
-                Map<String, String> packageTable = (Map<String, String>) currentTomlFileMap.get(PACKAGE);
-                packageTable.replace(VERSION, updatedVersion);
-                currentTomlFileMap.replace(PACKAGE, packageTable);
-                try (OutputStream out = new FileOutputStream(filePath)) {
-                    tomlWriter.write(currentTomlFileMap, out);
-                }
-            }
-        }
+        TomlVersionBumper.bumpVersion(packagePath);
     }
 
     /**
@@ -142,11 +162,6 @@ public class CommonUtils {
      */
     public static List<String> findBallerinaPackages(String projectBaseDir)
             throws IOException {
-        List<String> packageDirs;
-        try (Stream<Path> path = Files.walk(Paths.get(projectBaseDir))) {
-            packageDirs = path.map(Path::toString).filter(f -> f.contains(BALLERINA_TOML))
-                    .map(s -> s.substring(0, s.lastIndexOf("/"))).collect(Collectors.toList());
-        }
-        return packageDirs.stream().distinct().collect(Collectors.toList());
+        return PackageIndex.load(Paths.get(projectBaseDir)).getPackageDirs();
     }
 }
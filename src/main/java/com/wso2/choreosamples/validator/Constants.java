@@ -20,6 +20,8 @@ package com.wso2.choreosamples.validator;
 
 public class Constants {
     public static final String MD5 = "MD5";
+    public static final String XXH64 = "XXH64";
+    public static final String FINGERPRINT_ALGORITHM_KEY = ".fingerprint.algorithm";
     public static final String PACKAGE = "package";
     public static final String VERSION = "version";
     public static final String EMPTY_STRING = "";
@@ -28,4 +30,12 @@ public class Constants {
     public static final String BALLERINA_TOML = "Ballerina.toml";
     public static final String PACKAGE_MD = "Package.md";
     public static final String MODULE_MD = "Module.md";
+    public static final String CACHE_DIR = ".choreo-validator";
+    public static final String HASH_CACHE = "hash-cache";
+    public static final String PACKAGE_INDEX = "package-index";
+    public static final String OPENAPI_CACHE = "openapi-cache";
+    public static final String ARCHIVE_CACHE = "archives";
+    public static final String PRECHECK_CACHE = "precheck-cache";
+    public static final String DEPENDENCY_GRAPH = "dependency-graph";
+    public static final String DEPENDENCIES_TOML = "Dependencies.toml";
 }
@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import com.moandjiezana.toml.Toml;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.DEPENDENCIES_TOML;
+import static com.wso2.choreosamples.validator.Constants.DEPENDENCY_GRAPH;
+
+/**
+ * Dependency graph of the local Ballerina packages of a project.
+ * Every package is identified by the org and name of the <code>[package]</code> table of its Ballerina.toml. It
+ * depends on the local packages listed as the <code>dependencies</code> of its own <code>[[package]]</code> entry in
+ * its Dependencies.toml, along with any <code>[[dependency]]</code> entries of older TOML files. Dependencies on
+ * packages outside the project are ignored. The graph is cached in the cache directory of the project and only the
+ * packages whose TOML files changed are parsed again.
+ */
+public class DependencyGraph {
+
+    private static final String HEADER = "# choreo-sample-validator dependency graph v2";
+    private static final String PACKAGE = "package";
+    private static final String DEPENDENCY = "dependency";
+    private static final String DEPENDENCIES = "dependencies";
+    private static final String UNNAMED = "-";
+
+    private final Map<String, Set<String>> dependencies;
+    private final Map<String, Set<String>> dependents;
+
+    private DependencyGraph(Map<String, Set<String>> dependencies) {
+        this.dependencies = dependencies;
+        this.dependents = new TreeMap<>();
+        for (String packageDir : dependencies.keySet()) {
+            dependents.put(packageDir, new LinkedHashSet<>());
+        }
+        dependencies.forEach((packageDir, packageDependencies) ->
+                packageDependencies.forEach(dependency -> dependents.get(dependency).add(packageDir)));
+    }
+
+    /**
+     * Load the dependency graph of the given project, parsing only the TOML files changed since the cached graph.
+     *
+     * @param projectBaseDir the base project directory
+     * @return the dependency graph
+     * @throws IOException        if an error occurred while reading the TOML files
+     * @throws ValidatorException if a TOML file is invalid
+     */
+    public static DependencyGraph load(Path projectBaseDir) throws IOException, ValidatorException {
+        Map<String, PackageEntry> cachedEntries = readCache(projectBaseDir);
+        Map<String, PackageEntry> entries = new TreeMap<>();
+        for (String packageDir : PackageIndex.load(projectBaseDir).getPackageDirs()) {
+            String key = projectBaseDir.relativize(Paths.get(packageDir)).toString();
+            String tomlHash = tomlHash(Paths.get(packageDir));
+            PackageEntry entry = cachedEntries.get(key);
+            if (entry == null || !entry.tomlHash.equals(tomlHash)) {
+                entry = parse(Paths.get(packageDir), tomlHash);
+            }
+            entries.put(key, entry);
+        }
+        writeCache(projectBaseDir, entries);
+
+        Map<String, List<String>> packagesByName = new HashMap<>();
+        entries.forEach((key, entry) -> packagesByName.computeIfAbsent(entry.name, k -> new ArrayList<>())
+                .add(projectBaseDir.resolve(key).toString()));
+        packagesByName.remove(UNNAMED);
+        Map<String, Set<String>> dependencies = new TreeMap<>();
+        entries.forEach((key, entry) -> {
+            String packageDir = projectBaseDir.resolve(key).toString();
+            Set<String> packageDependencies = new LinkedHashSet<>();
+            for (String dependency : entry.dependencies) {
+                for (String dependencyDir : packagesByName.getOrDefault(dependency, Collections.emptyList())) {
+                    if (!dependencyDir.equals(packageDir)) {
+                        packageDependencies.add(dependencyDir);
+                    }
+                }
+            }
+            dependencies.put(packageDir, packageDependencies);
+        });
+        return new DependencyGraph(dependencies);
+    }
+
+    /**
+     * Get the local packages the given package depends on.
+     *
+     * @param packageDir path to the Ballerina package
+     * @return paths of the direct dependencies
+     */
+    public Set<String> getDependencies(String packageDir) {
+        return Collections.unmodifiableSet(dependencies.getOrDefault(packageDir, Collections.emptySet()));
+    }
+
+    /**
+     * Get the local packages depending on the given package.
+     *
+     * @param packageDir path to the Ballerina package
+     * @return paths of the direct dependents
+     */
+    public Set<String> getDependents(String packageDir) {
+        return Collections.unmodifiableSet(dependents.getOrDefault(packageDir, Collections.emptySet()));
+    }
+
+    /**
+     * Plan the minimal rebuild of the given changed packages: the changed packages along with every package
+     * depending on them, directly or transitively, split into waves. Every package of a wave only depends on
+     * packages of earlier waves, so the packages of a wave can be built in parallel.
+     *
+     * @param changedPackageDirs paths of the changed Ballerina packages
+     * @return the rebuild plan
+     * @throws ValidatorException if the packages to rebuild depend on each other in a cycle
+     */
+    public RebuildPlan planRebuild(Collection<String> changedPackageDirs) throws ValidatorException {
+        Set<String> rebuild = new TreeSet<>();
+        List<String> pending = new ArrayList<>(changedPackageDirs);
+        while (!pending.isEmpty()) {
+            String packageDir = pending.remove(pending.size() - 1);
+            if (rebuild.add(packageDir)) {
+                pending.addAll(getDependents(packageDir));
+            }
+        }
+
+        Map<String, Integer> remainingDependencies = new TreeMap<>();
+        for (String packageDir : rebuild) {
+            int count = 0;
+            for (String dependency : getDependencies(packageDir)) {
+                if (rebuild.contains(dependency)) {
+                    count++;
+                }
+            }
+            remainingDependencies.put(packageDir, count);
+        }
+        List<List<String>> waves = new ArrayList<>();
+        List<String> wave = new ArrayList<>();
+        remainingDependencies.forEach((packageDir, count) -> {
+            if (count == 0) {
+                wave.add(packageDir);
+            }
+        });
+        int planned = 0;
+        List<String> current = wave;
+        while (!current.isEmpty()) {
+            waves.add(Collections.unmodifiableList(current));
+            planned += current.size();
+            List<String> next = new ArrayList<>();
+            for (String packageDir : current) {
+                for (String dependent : getDependents(packageDir)) {
+                    Integer count = remainingDependencies.get(dependent);
+                    if (count != null) {
+                        remainingDependencies.put(dependent, count - 1);
+                        if (count == 1) {
+                            next.add(dependent);
+                        }
+                    }
+                }
+            }
+            Collections.sort(next);
+            current = next;
+        }
+        if (planned < rebuild.size()) {
+            List<String> cycle = new ArrayList<>();
+            remainingDependencies.forEach((packageDir, count) -> {
+                if (count > 0) {
+                    cycle.add(packageDir);
+                }
+            });
+            throw new ValidatorException("Dependency cycle among packages " + cycle);
+        }
+        return new RebuildPlan(waves);
+    }
+
+    private static String tomlHash(Path packageDir) throws IOException {
+        FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+        for (String tomlName : new String[]{BALLERINA_TOML, DEPENDENCIES_TOML}) {
+            Path tomlFile = packageDir.resolve(tomlName);
+            byte[] marker = {(byte) (Files.isRegularFile(tomlFile) ? 1 : 0)};
+            hasher.update(marker, 0, 1);
+            if (marker[0] == 1) {
+                PackageHasher.update(hasher, tomlFile);
+            }
+        }
+        return hasher.getHashString();
+    }
+
+    private static PackageEntry parse(Path packageDir, String tomlHash) throws ValidatorException {
+        String name = UNNAMED;
+        Set<String> packageDependencies = new LinkedHashSet<>();
+        for (String tomlName : new String[]{BALLERINA_TOML, DEPENDENCIES_TOML}) {
+            Path tomlFile = packageDir.resolve(tomlName);
+            if (!Files.isRegularFile(tomlFile)) {
+                continue;
+            }
+            // toml4j casts the parsed values to the requested shape, so an unexpected shape fails like a syntax error.
+            try {
+                Toml toml = new Toml().read(tomlFile.toFile());
+                if (tomlName.equals(BALLERINA_TOML)) {
+                    Toml packageTable = toml.getTable(PACKAGE);
+                    if (packageTable != null) {
+                        name = qualifiedName(packageTable);
+                    }
+                } else {
+                    addLockedDependencies(toml, name, packageDependencies);
+                }
+                addDependencies(toml.getTables(DEPENDENCY), packageDependencies);
+            } catch (RuntimeException e) {
+                throw new ValidatorException("Invalid TOML file " + tomlFile + ": " + e.getMessage(), e);
+            }
+        }
+        return new PackageEntry(tomlHash, name, new ArrayList<>(packageDependencies));
+    }
+
+    /**
+     * Add the dependencies recorded for the package itself among the <code>[[package]]</code> entries of a
+     * Dependencies.toml. The other entries describe the dependencies of the dependencies.
+     */
+    private static void addLockedDependencies(Toml dependenciesToml, String name, Set<String> packageDependencies) {
+        List<Toml> packageTables = dependenciesToml.getTables(PACKAGE);
+        if (packageTables == null || name.equals(UNNAMED)) {
+            return;
+        }
+        for (Toml packageTable : packageTables) {
+            if (name.equals(qualifiedName(packageTable))) {
+                addDependencies(packageTable.getTables(DEPENDENCIES), packageDependencies);
+            }
+        }
+    }
+
+    private static void addDependencies(List<Toml> dependencyTables, Set<String> packageDependencies) {
+        if (dependencyTables == null) {
+            return;
+        }
+        for (Toml dependencyTable : dependencyTables) {
+            String dependency = qualifiedName(dependencyTable);
+            if (!dependency.equals(UNNAMED)) {
+                packageDependencies.add(dependency);
+            }
+        }
+    }
+
+    private static String qualifiedName(Toml table) {
+        String org = table.getString("org");
+        String name = table.getString("name");
+        if (org == null || name == null || (org + name).matches(".*\\s.*")) {
+            return UNNAMED;
+        }
+        return org + "/" + name;
+    }
+
+    private static Map<String, PackageEntry> readCache(Path projectBaseDir) {
+        Path cacheFile = projectBaseDir.resolve(CACHE_DIR).resolve(DEPENDENCY_GRAPH);
+        Map<String, PackageEntry> entries = new HashMap<>();
+        if (!Files.isRegularFile(cacheFile)) {
+            return entries;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return entries;
+            }
+            List<String> packageDependencies = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PACKAGE + " ")) {
+                    String[] parts = line.split(" ", 4);
+                    packageDependencies = new ArrayList<>();
+                    entries.put(parts[3], new PackageEntry(parts[1], parts[2], packageDependencies));
+                } else if (line.startsWith(DEPENDENCY + " ") && packageDependencies != null) {
+                    packageDependencies.add(line.substring(DEPENDENCY.length() + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupted cache only costs parsing the TOML files again.
+            return new HashMap<>();
+        }
+        return entries;
+    }
+
+    private static void writeCache(Path projectBaseDir, Map<String, PackageEntry> entries) {
+        Path cacheFile = projectBaseDir.resolve(CACHE_DIR).resolve(DEPENDENCY_GRAPH);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path tempFile = Files.createTempFile(cacheFile.getParent(), DEPENDENCY_GRAPH, ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, PackageEntry> entry : entries.entrySet()) {
+                    writer.write(String.join(" ", PACKAGE, entry.getValue().tomlHash, entry.getValue().name,
+                            entry.getKey()));
+                    writer.newLine();
+                    for (String dependency : entry.getValue().dependencies) {
+                        writer.write(DEPENDENCY + " " + dependency);
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cached graph is only an optimization, the next run parses the TOML files again.
+        }
+    }
+
+    /**
+     * Parsed TOML files of a package.
+     */
+    private static class PackageEntry {
+        final String tomlHash;
+        final String name;
+        final List<String> dependencies;
+
+        PackageEntry(String tomlHash, String name, List<String> dependencies) {
+            this.tomlHash = tomlHash;
+            this.name = name;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Packages to rebuild, in waves of packages which can be built in parallel.
+     */
+    public static class RebuildPlan {
+        private final List<List<String>> waves;
+
+        RebuildPlan(List<List<String>> waves) {
+            this.waves = Collections.unmodifiableList(waves);
+        }
+
+        /**
+         * Get the waves of the rebuild. A wave only depends on the packages of earlier waves.
+         *
+         * @return package paths of each wave, in build order
+         */
+        public List<List<String>> getWaves() {
+            return waves;
+        }
+
+        /**
+         * Get every package to rebuild in a topological order, dependencies before their dependents.
+         *
+         * @return package paths in build order
+         */
+        public List<String> getPackages() {
+            List<String> packages = new ArrayList<>();
+            waves.forEach(packages::addAll);
+            return packages;
+        }
+    }
+}
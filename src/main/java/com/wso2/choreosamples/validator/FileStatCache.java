@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.HASH_CACHE;
+
+/**
+ * Persisted per file stat cache of the package hashes.
+ * For every package it records the Merkle root over its files, the package hashes computed for that root by each
+ * fingerprint algorithm and the size, modification time and digest of each file. File digests and Merkle roots
+ * always use {@link #FILE_ALGORITHM}. The cache also persists the canonical digests of the
+ * {@link SemanticFingerprint} for the files it knows. The cache is stored in the cache directory of the project,
+ * next to the hash properties files.
+ */
+public class FileStatCache {
+
+    /**
+     * Algorithm of the file digests and the Merkle roots.
+     */
+    static final FingerprintAlgorithm FILE_ALGORITHM = FingerprintAlgorithms.XXH64;
+
+    private static final String HEADER = "# choreo-sample-validator hash cache v3";
+    private static final String TIME = "time";
+    private static final String PACKAGE = "package";
+    private static final String HASH = "hash";
+    private static final String FILE = "file";
+    private static final String CANONICAL = "canonical";
+
+    /**
+     * Files modified this close to the start of the run which wrote the cache may have been modified again within
+     * the same timestamp granularity, so their stat is not trusted.
+     */
+    static final long RACY_WINDOW_MILLIS = 2000;
+
+    private final Path baseDir;
+    private final Path cacheFile;
+    private final long previousWriteTime;
+    private final Map<String, PackageEntry> packages;
+
+    /**
+     * Time the cache was loaded, before any file is stat'ed through it. Persisted as the write time, so a file
+     * rewritten while the run hashes is not trusted by the next run.
+     */
+    private final long loadTime = System.currentTimeMillis();
+
+    /**
+     * Earliest write time of the caches merged into this one, the stats they hold were taken after it.
+     */
+    private long mergedWriteTime = Long.MAX_VALUE;
+
+    private FileStatCache(Path baseDir, Path cacheFile, long previousWriteTime, Map<String, PackageEntry> packages) {
+        this.baseDir = baseDir;
+        this.cacheFile = cacheFile;
+        this.previousWriteTime = previousWriteTime;
+        this.packages = new ConcurrentHashMap<>(packages);
+    }
+
+    /**
+     * Load the hash cache of the given project. A missing or unreadable cache results in an empty cache.
+     *
+     * @param projectBaseDir the base project directory
+     * @return the loaded cache
+     */
+    public static FileStatCache load(Path projectBaseDir) {
+        return load(projectBaseDir, projectBaseDir.resolve(CACHE_DIR).resolve(HASH_CACHE));
+    }
+
+    /**
+     * Load a hash cache of the given project from the given file, e.g. the cache written by a shard.
+     *
+     * @param projectBaseDir the base project directory
+     * @param cacheFile      path of the cache file
+     * @return the loaded cache
+     */
+    static FileStatCache load(Path projectBaseDir, Path cacheFile) {
+        Map<String, PackageEntry> packages = new LinkedHashMap<>();
+        long writeTime = 0;
+        if (Files.isRegularFile(cacheFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                if (!HEADER.equals(reader.readLine())) {
+                    return new FileStatCache(projectBaseDir, cacheFile, 0, Collections.emptyMap());
+                }
+                Map<String, String> packageHashes = null;
+                Map<String, FileEntry> files = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String type = line.substring(0, line.indexOf(' '));
+                    if (TIME.equals(type)) {
+                        writeTime = Long.parseLong(line.substring(TIME.length() + 1));
+                    } else if (PACKAGE.equals(type)) {
+                        String[] parts = line.split(" ", 3);
+                        packageHashes = new TreeMap<>();
+                        files = new TreeMap<>();
+                        packages.put(parts[2], new PackageEntry(parts[1], packageHashes, files));
+                    } else if (HASH.equals(type) && packageHashes != null) {
+                        String[] parts = line.split(" ", 3);
+                        packageHashes.put(parts[1], parts[2]);
+                    } else if (FILE.equals(type) && files != null) {
+                        String[] parts = line.split(" ", 5);
+                        files.put(parts[4], new FileEntry(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                                parts[3]));
+                    } else if (CANONICAL.equals(type)) {
+                        String[] parts = line.split(" ", 3);
+                        SemanticFingerprint.rememberCanonicalDigest(parts[1], parts[2]);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // A corrupted cache only costs a full rehash.
+                return new FileStatCache(projectBaseDir, cacheFile, 0, Collections.emptyMap());
+            }
+        }
+        return new FileStatCache(projectBaseDir, cacheFile, writeTime, packages);
+    }
+
+    /**
+     * Write the cache to the cache directory of the project. The cache is replaced atomically.
+     *
+     * @throws IOException if an error occurred while writing the cache
+     */
+    public void save() throws IOException {
+        save(cacheFile);
+    }
+
+    /**
+     * Write the cache to the given file instead of the file it was loaded from. The file is replaced atomically.
+     *
+     * @param targetFile path of the cache file to write
+     * @throws IOException if an error occurred while writing the cache
+     */
+    void save(Path targetFile) throws IOException {
+        Files.createDirectories(targetFile.getParent());
+        Path tempFile = Files.createTempFile(targetFile.getParent(), HASH_CACHE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(TIME + " " + Math.min(loadTime, mergedWriteTime));
+            writer.newLine();
+            Set<String> digests = new HashSet<>();
+            for (Map.Entry<String, PackageEntry> packageEntry : new TreeMap<>(packages).entrySet()) {
+                PackageEntry entry = packageEntry.getValue();
+                writer.write(String.join(" ", PACKAGE, entry.merkleRoot, packageEntry.getKey()));
+                writer.newLine();
+                for (Map.Entry<String, String> hashEntry : entry.packageHashes.entrySet()) {
+                    writer.write(String.join(" ", HASH, hashEntry.getKey(), hashEntry.getValue()));
+                    writer.newLine();
+                }
+                for (Map.Entry<String, FileEntry> fileEntry : entry.files.entrySet()) {
+                    FileEntry file = fileEntry.getValue();
+                    writer.write(String.join(" ", FILE, Long.toString(file.size), Long.toString(file.modifiedTime),
+                            file.digest, fileEntry.getKey()));
+                    writer.newLine();
+                    digests.add(file.digest);
+                }
+            }
+            // Only the canonical digests of files still known to the cache are kept, on disk and in memory, so a
+            // long running process doesn't accumulate the digests of every version of every file.
+            SemanticFingerprint.retainCanonicalDigests(digests);
+            for (Map.Entry<String, String> canonical : new TreeMap<>(SemanticFingerprint.getCanonicalDigests())
+                    .entrySet()) {
+                writer.write(String.join(" ", CANONICAL, canonical.getKey(), canonical.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Take the cached state of the given packages from another cache of the same project. The next write time is
+     * kept no later than the write time of the other cache, so the racy window still covers its stats.
+     *
+     * @param other       cache to take the packages from
+     * @param packageKeys keys of the packages to take
+     */
+    void merge(FileStatCache other, Collection<String> packageKeys) {
+        for (String packageKey : packageKeys) {
+            PackageEntry entry = other.packages.get(packageKey);
+            if (entry != null) {
+                packages.put(packageKey, entry);
+            }
+        }
+        mergedWriteTime = Math.min(mergedWriteTime, other.previousWriteTime);
+    }
+
+    /**
+     * Key of the given package in this cache.
+     *
+     * @param packageDir path to the Ballerina package
+     * @return package path relative to the project
+     */
+    String packageKey(Path packageDir) {
+        return baseDir.toAbsolutePath().normalize().relativize(packageDir.toAbsolutePath().normalize()).toString();
+    }
+
+    PackageEntry get(String packageKey) {
+        return packages.get(packageKey);
+    }
+
+    void put(String packageKey, PackageEntry entry) {
+        packages.put(packageKey, entry);
+    }
+
+    /**
+     * Check whether the cached stat of a file still identifies its content.
+     *
+     * @param entry        cached entry of the file, may be null
+     * @param size         current file size
+     * @param modifiedTime current file modification time in milliseconds
+     * @return true if the cached digest can be used without reading the file
+     */
+    boolean isUpToDate(FileEntry entry, long size, long modifiedTime) {
+        return entry != null && entry.size == size && entry.modifiedTime == modifiedTime
+                && modifiedTime < previousWriteTime - RACY_WINDOW_MILLIS;
+    }
+
+    /**
+     * Cached state of a package.
+     */
+    static class PackageEntry {
+        final String merkleRoot;
+        final Map<String, String> packageHashes;
+        final Map<String, FileEntry> files;
+
+        PackageEntry(String merkleRoot, Map<String, String> packageHashes, Map<String, FileEntry> files) {
+            this.merkleRoot = merkleRoot;
+            this.packageHashes = packageHashes;
+            this.files = files;
+        }
+    }
+
+    /**
+     * Cached stat and digest of a file.
+     */
+    static class FileEntry {
+        final long size;
+        final long modifiedTime;
+        final String digest;
+
+        FileEntry(long size, long modifiedTime, String digest) {
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Algorithm producing the package fingerprints stored in the hash properties files.
+ * Additional algorithms can be registered through {@link java.util.ServiceLoader}.
+ */
+public interface FingerprintAlgorithm {
+
+    /**
+     * Name of the algorithm, recorded along with each fingerprint it produces.
+     *
+     * @return algorithm name
+     */
+    String getName();
+
+    /**
+     * Create a new hasher to compute a single fingerprint.
+     *
+     * @return the hasher
+     */
+    FingerprintHasher newHasher();
+
+    /**
+     * Generate the fingerprint of the given package files. The default feeds the content of every file to a single
+     * hasher, as if the files were concatenated.
+     *
+     * @param files package files in the hashing order
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    default String hash(List<File> files) throws IOException {
+        return PackageHasher.generateHashString(files, this);
+    }
+
+    /**
+     * Feed a single package file to a hasher created by {@link #newHasher()}, so that feeding every file of the
+     * package in the hashing order yields {@link #hash(List)}. The raw digest of the file, in the file algorithm of the
+     * {@link FileStatCache}, is computed from the same read unless the caller already knows it.
+     *
+     * @param hasher     hasher of this algorithm
+     * @param file       package file
+     * @param fileDigest the raw digest computed with {@link FileStatCache#FILE_ALGORITHM}, or null if it isn't known
+     * @return the raw digest of the file computed with {@link FileStatCache#FILE_ALGORITHM}
+     * @throws IOException On an error while reading the file
+     */
+    default String update(FingerprintHasher hasher, Path file, String fileDigest) throws IOException {
+        if (fileDigest != null) {
+            PackageHasher.update(hasher, file);
+            return fileDigest;
+        }
+        FingerprintHasher fileHasher = FileStatCache.FILE_ALGORITHM.newHasher();
+        PackageHasher.update(hasher, fileHasher, file);
+        return fileHasher.getHashString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.wso2.choreosamples.validator.Constants.FINGERPRINT_ALGORITHM_KEY;
+
+/**
+ * Registry of the package fingerprint algorithms and the format of the fingerprints in the hash properties files.
+ * MD5 fingerprints are stored as a bare hex string, as in the existing properties files, while every other algorithm
+ * prefixes the hex string with its name in braces, e.g. <code>{XXH64}3f2a...</code>. A properties file selects the
+ * algorithm for new entries through the {@link Constants#FINGERPRINT_ALGORITHM_KEY} entry and defaults to MD5.
+ * Each built-in algorithm also has a {@link SemanticFingerprint} variant, e.g. <code>XXH64-SEMANTIC</code>.
+ */
+public class FingerprintAlgorithms {
+
+    public static final FingerprintAlgorithm MD5 = new Md5Fingerprint();
+    public static final FingerprintAlgorithm XXH64 = new XxHash64Fingerprint();
+    public static final FingerprintAlgorithm MD5_SEMANTIC = new SemanticFingerprint(MD5);
+    public static final FingerprintAlgorithm XXH64_SEMANTIC = new SemanticFingerprint(XXH64);
+
+    private static final char NAME_START = '{';
+    private static final char NAME_END = '}';
+    private static final Map<String, FingerprintAlgorithm> ALGORITHMS = new ConcurrentHashMap<>();
+
+    static {
+        register(MD5);
+        register(XXH64);
+        register(MD5_SEMANTIC);
+        register(XXH64_SEMANTIC);
+        for (FingerprintAlgorithm algorithm : ServiceLoader.load(FingerprintAlgorithm.class)) {
+            register(algorithm);
+        }
+    }
+
+    private static void register(FingerprintAlgorithm algorithm) {
+        ALGORITHMS.put(algorithm.getName().toUpperCase(Locale.ROOT), algorithm);
+    }
+
+    /**
+     * Find the fingerprint algorithm with the given name.
+     *
+     * @param name algorithm name, case insensitive
+     * @return the algorithm
+     * @throws IllegalArgumentException if no such algorithm is registered
+     */
+    public static FingerprintAlgorithm forName(String name) {
+        FingerprintAlgorithm algorithm = ALGORITHMS.get(name.trim().toUpperCase(Locale.ROOT));
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Unknown fingerprint algorithm: " + name);
+        }
+        return algorithm;
+    }
+
+    /**
+     * Get the algorithm selected for new entries of the given properties file.
+     *
+     * @param manifest loaded hash properties
+     * @return the selected algorithm, MD5 when none is selected
+     */
+    public static FingerprintAlgorithm selectedAlgorithm(Properties manifest) {
+        String name = manifest.getProperty(FINGERPRINT_ALGORITHM_KEY);
+        return name != null ? forName(name) : MD5;
+    }
+
+    /**
+     * Get the algorithm selected for new entries of the given hash manifest.
+     *
+     * @param manifest loaded hash manifest
+     * @return the selected algorithm, MD5 when none is selected
+     */
+    public static FingerprintAlgorithm selectedAlgorithm(ManifestStore manifest) {
+        String name = manifest.get(FINGERPRINT_ALGORITHM_KEY);
+        return name != null ? forName(name) : MD5;
+    }
+
+    /**
+     * Get the algorithm which produced the given properties entry.
+     *
+     * @param fingerprint fingerprint entry as stored in the properties file
+     * @return the algorithm, MD5 for an untagged entry and for an empty entry or an entry tagged with an unknown
+     * algorithm, which never match a package hash and are rehashed with the selected algorithm on update
+     */
+    public static FingerprintAlgorithm algorithmOf(String fingerprint) {
+        FingerprintAlgorithm algorithm = taggedAlgorithm(fingerprint);
+        return algorithm != null ? algorithm : MD5;
+    }
+
+    /**
+     * Check whether a package hash can match the given properties entry, i.e. the entry is not empty and its
+     * algorithm is registered.
+     *
+     * @param fingerprint fingerprint entry as stored in the properties file
+     * @return true if the entry can be compared with a package hash
+     */
+    public static boolean isComparable(String fingerprint) {
+        return taggedAlgorithm(fingerprint) != null;
+    }
+
+    /**
+     * Get the registered algorithm named by the tag of the given entry, MD5 for an untagged entry and null for an
+     * empty entry or an unknown tag.
+     */
+    private static FingerprintAlgorithm taggedAlgorithm(String fingerprint) {
+        int nameEnd = fingerprint.indexOf(NAME_END);
+        if (fingerprint.isEmpty()) {
+            return null;
+        }
+        if (fingerprint.charAt(0) != NAME_START || nameEnd < 0) {
+            return MD5;
+        }
+        return ALGORITHMS.get(fingerprint.substring(1, nameEnd).trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Format a fingerprint to be stored in a properties file.
+     *
+     * @param algorithm algorithm which produced the fingerprint
+     * @param hash      hex string of the fingerprint
+     * @return fingerprint entry
+     */
+    public static String format(FingerprintAlgorithm algorithm, String hash) {
+        return algorithm == MD5 ? hash : NAME_START + algorithm.getName() + NAME_END + hash;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes a single fingerprint over the content fed to it.
+ */
+public interface FingerprintHasher {
+
+    /**
+     * Feed the given bytes to the fingerprint.
+     *
+     * @param input  input bytes
+     * @param offset offset of the first byte to feed
+     * @param length number of bytes to feed
+     */
+    void update(byte[] input, int offset, int length);
+
+    /**
+     * Feed the remaining bytes of the given buffer to the fingerprint.
+     *
+     * @param input input buffer, consumed up to its limit
+     */
+    void update(ByteBuffer input);
+
+    /**
+     * Complete the fingerprint.
+     *
+     * @return lower case hex string of the fingerprint
+     */
+    String getHashString();
+}
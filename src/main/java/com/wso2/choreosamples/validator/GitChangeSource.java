@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lists the files changed in the local git repository of a project, using the native git executable.
+ * Only the local repository is read, so it works fully offline.
+ */
+public class GitChangeSource {
+
+    private static final String GIT = "git";
+
+    private final Path baseDir;
+    private final String baseRef;
+
+    /**
+     * Create a git change source.
+     *
+     * @param projectBaseDir the base project directory, inside a git working tree
+     * @param baseRef        commit, branch or tag to compare against, e.g. the target branch of a pull request
+     */
+    public GitChangeSource(Path projectBaseDir, String baseRef) {
+        this.baseDir = projectBaseDir;
+        this.baseRef = baseRef;
+    }
+
+    /**
+     * Classify the given packages by the files changed inside them.
+     *
+     * @param packageDirs paths of the Ballerina packages
+     * @return the state of each package
+     * @throws IOException if git failed to list the changes
+     */
+    public Map<String, PackageState> classifyPackages(List<String> packageDirs) throws IOException {
+        Path topLevel = Paths.get(git("rev-parse", "--show-toplevel").trim());
+        // Changes on HEAD since the fork point from the base, then staged, unstaged and untracked changes. Without
+        // rename detection a moved file is listed under both paths, so the package it left is changed too.
+        List<String> committed = splitPaths(git("diff", "--name-only", "--no-renames", "-z", baseRef + "...HEAD",
+                "--"));
+        List<String> dirty = new ArrayList<>(splitPaths(git("diff", "--name-only", "--no-renames", "-z", "HEAD",
+                "--")));
+        dirty.addAll(splitPaths(git("ls-files", "--others", "--exclude-standard", "-z")));
+
+        Path realBaseDir = baseDir.toRealPath();
+        Map<Path, String> packageRoots = new HashMap<>();
+        for (String packageDir : packageDirs) {
+            packageRoots.put(realBaseDir.resolve(baseDir.relativize(Paths.get(packageDir))).normalize(), packageDir);
+        }
+        Set<String> committedPackages = owningPackages(topLevel, committed, packageRoots);
+        Set<String> dirtyPackages = owningPackages(topLevel, dirty, packageRoots);
+
+        Map<String, PackageState> states = new HashMap<>();
+        for (String packageDir : packageDirs) {
+            if (dirtyPackages.contains(packageDir)) {
+                states.put(packageDir, PackageState.DIRTY);
+            } else if (committedPackages.contains(packageDir)) {
+                states.put(packageDir, PackageState.COMMITTED);
+            } else {
+                states.put(packageDir, PackageState.UNCHANGED);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Map the changed files to the packages they belong to, ignoring the files excluded from the package hash.
+     */
+    private static Set<String> owningPackages(Path topLevel, List<String> changedFiles,
+                                              Map<Path, String> packageRoots) {
+        Set<String> packages = new HashSet<>();
+        for (String changedFile : changedFiles) {
+            Path file = topLevel.resolve(changedFile).normalize();
+            boolean excluded = false;
+            for (Path current = file; current != null; current = current.getParent()) {
+                String packageDir = packageRoots.get(current);
+                if (packageDir != null) {
+                    if (!excluded) {
+                        packages.add(packageDir);
+                    }
+                    break;
+                }
+                excluded |= current.getFileName() != null
+                        && CommonUtils.isExcluded(current.getFileName().toString());
+            }
+        }
+        return packages;
+    }
+
+    private static List<String> splitPaths(String output) {
+        if (output.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> paths = new ArrayList<>(Arrays.asList(output.split("\0")));
+        paths.removeIf(String::isEmpty);
+        return paths;
+    }
+
+    private String git(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(GIT);
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command)
+                .directory(baseDir.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = process.getInputStream()) {
+            input.transferTo(output);
+        }
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("git " + String.join(" ", args) + " failed with exit code " + exitCode
+                        + " in " + baseDir);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running git", e);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * State of a package in the local git repository.
+     */
+    public enum PackageState {
+        /**
+         * No files of the package changed since the base.
+         */
+        UNCHANGED,
+        /**
+         * Files of the package changed in commits since the base, and the working tree is clean. The hash properties
+         * file may have been updated in the same commits, so the package still has to be hashed.
+         */
+        COMMITTED,
+        /**
+         * The package has staged, unstaged or untracked changes, so its content has to be hashed.
+         */
+        DIRTY
+    }
+}
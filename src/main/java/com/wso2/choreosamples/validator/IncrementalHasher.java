@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental package hasher backed by a {@link FileStatCache}.
+ * Each file is a leaf identified by its relative path and content digest, and the package is the Merkle root over
+ * its leaves. Only files whose size or modification time changed since the cached run are read. When the resulting
+ * root matches the cached root the cached package hash is reused. Otherwise the package hash is recomputed, fed
+ * from the same reads as the file digests, so the package hash stays the same fingerprint as
+ * {@link CommonUtils#generateHashString(String, FingerprintAlgorithm)}.
+ */
+public class IncrementalHasher {
+
+    /**
+     * Generate the MD5 package hash, reading only the files changed since the cached run.
+     *
+     * @param packageDir path to the Ballerina package
+     * @param cache      file stat cache, updated with the current state of the package
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    public static String generateHashString(String packageDir, FileStatCache cache) throws IOException {
+        return generateHashString(packageDir, cache, FingerprintAlgorithms.MD5);
+    }
+
+    /**
+     * Generate the package hash with the given algorithm, reading only the files changed since the cached run.
+     *
+     * @param packageDir path to the Ballerina package
+     * @param cache      file stat cache, updated with the current state of the package
+     * @param algorithm  fingerprint algorithm of the package hash
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    public static String generateHashString(String packageDir, FileStatCache cache, FingerprintAlgorithm algorithm)
+            throws IOException {
+        return hashPackage(packageDir, cache, algorithm).getPackageHash();
+    }
+
+    /**
+     * Hash the given package and compare its files against the cached run.
+     *
+     * @param packageDir path to the Ballerina package
+     * @param cache      file stat cache, updated with the current state of the package
+     * @param algorithm  fingerprint algorithm of the package hash
+     * @return package hash along with the files changed since the cached run
+     * @throws IOException On an error while reading files
+     */
+    public static PackageDigest hashPackage(String packageDir, FileStatCache cache, FingerprintAlgorithm algorithm)
+            throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.HASHING)) {
+            Path packagePath = Paths.get(packageDir);
+            String packageKey = cache.packageKey(packagePath);
+            FileStatCache.PackageEntry cachedPackage = cache.get(packageKey);
+            Map<String, FileStatCache.FileEntry> cachedFiles =
+                    cachedPackage != null ? cachedPackage.files : Collections.emptyMap();
+            String cachedPackageHash =
+                    cachedPackage != null ? cachedPackage.packageHashes.get(algorithm.getName()) : null;
+
+            List<File> files = new ArrayList<>();
+            CommonUtils.collectFiles(packagePath.toFile(), files);
+            ValidatorMetrics.increment(ValidatorMetrics.Counter.FILES_VISITED, files.size());
+            List<String> digests = new ArrayList<>(files.size());
+            Map<String, FileStatCache.FileEntry> currentFiles = new TreeMap<>();
+            List<String> changedFiles = new ArrayList<>();
+            FingerprintHasher merkle = FileStatCache.FILE_ALGORITHM.newHasher();
+            // Without a cached package hash to reuse, the package hash is fed from the same reads as the file
+            // digests. Otherwise it's only started at the first changed file, once the cached hash can't be reused.
+            FingerprintHasher packageHasher = cachedPackageHash == null ? algorithm.newHasher() : null;
+            for (File file : files) {
+                String fileKey = packagePath.relativize(file.toPath()).toString();
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                long modifiedTime = attributes.lastModifiedTime().toMillis();
+                FileStatCache.FileEntry cachedFile = cachedFiles.get(fileKey);
+                String digest;
+                FileStatCache.FileEntry currentFile;
+                if (cache.isUpToDate(cachedFile, attributes.size(), modifiedTime)) {
+                    ValidatorMetrics.increment(ValidatorMetrics.Counter.CACHE_HITS, 1);
+                    digest = cachedFile.digest;
+                    currentFile = cachedFile;
+                    if (packageHasher != null) {
+                        algorithm.update(packageHasher, file.toPath(), digest);
+                    }
+                } else {
+                    ValidatorMetrics.increment(ValidatorMetrics.Counter.CACHE_MISSES, 1);
+                    if (packageHasher == null && cachedFile == null) {
+                        packageHasher = startPackageHash(algorithm, files, digests);
+                    }
+                    if (packageHasher != null) {
+                        digest = algorithm.update(packageHasher, file.toPath(), null);
+                    } else {
+                        FingerprintHasher fileHasher = FileStatCache.FILE_ALGORITHM.newHasher();
+                        PackageHasher.update(fileHasher, file.toPath());
+                        digest = fileHasher.getHashString();
+                        if (!cachedFile.digest.equals(digest)) {
+                            packageHasher = startPackageHash(algorithm, files, digests);
+                            algorithm.update(packageHasher, file.toPath(), digest);
+                        }
+                    }
+                    currentFile = new FileStatCache.FileEntry(attributes.size(), modifiedTime, digest);
+                    if (cachedFile == null || !cachedFile.digest.equals(digest)) {
+                        changedFiles.add(fileKey);
+                    }
+                }
+                digests.add(digest);
+                currentFiles.put(fileKey, currentFile);
+                byte[] leaf = (fileKey + '\0' + digest).getBytes(StandardCharsets.UTF_8);
+                merkle.update(leaf, 0, leaf.length);
+            }
+            for (String cachedFileKey : cachedFiles.keySet()) {
+                if (!currentFiles.containsKey(cachedFileKey)) {
+                    changedFiles.add(cachedFileKey);
+                }
+            }
+
+            String merkleRoot = merkle.getHashString();
+            Map<String, String> packageHashes = new TreeMap<>();
+            boolean unchanged = cachedPackage != null && cachedPackage.merkleRoot.equals(merkleRoot);
+            if (unchanged) {
+                packageHashes.putAll(cachedPackage.packageHashes);
+            }
+            String packageHash;
+            if (packageHasher != null) {
+                packageHash = packageHasher.getHashString();
+            } else if (unchanged) {
+                packageHash = cachedPackageHash;
+            } else {
+                // Only files were removed, so the package hash is computed from the known file digests.
+                packageHash = startPackageHash(algorithm, files, digests).getHashString();
+            }
+            packageHashes.put(algorithm.getName(), packageHash);
+            cache.put(packageKey, new FileStatCache.PackageEntry(merkleRoot, packageHashes, currentFiles));
+            return new PackageDigest(packageHash, merkleRoot, changedFiles);
+        }
+    }
+
+    /**
+     * Start a package hash with the files already visited, using their known digests.
+     */
+    private static FingerprintHasher startPackageHash(FingerprintAlgorithm algorithm, List<File> files,
+                                                      List<String> digests) throws IOException {
+        FingerprintHasher packageHasher = algorithm.newHasher();
+        for (int i = 0; i < digests.size(); i++) {
+            algorithm.update(packageHasher, files.get(i).toPath(), digests.get(i));
+        }
+        return packageHasher;
+    }
+
+    /**
+     * Hash of a package along with the files changed since the cached run.
+     */
+    public static class PackageDigest {
+        private final String packageHash;
+        private final String merkleRoot;
+        private final List<String> changedFiles;
+
+        PackageDigest(String packageHash, String merkleRoot, List<String> changedFiles) {
+            this.packageHash = packageHash;
+            this.merkleRoot = merkleRoot;
+            this.changedFiles = Collections.unmodifiableList(changedFiles);
+        }
+
+        public String getPackageHash() {
+            return packageHash;
+        }
+
+        public String getMerkleRoot() {
+            return merkleRoot;
+        }
+
+        /**
+         * Files added, modified or removed since the cached run, relative to the package directory.
+         *
+         * @return changed file paths
+         */
+        public List<String> getChangedFiles() {
+            return changedFiles;
+        }
+    }
+}
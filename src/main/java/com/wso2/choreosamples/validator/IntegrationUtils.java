@@ -18,19 +18,11 @@
 
 package com.wso2.choreosamples.validator;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Properties;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
 import static com.wso2.choreosamples.validator.Constants.INTEGRATION_PROPERTIES;
 
 /**
@@ -38,22 +30,16 @@ import static com.wso2.choreosamples.validator.Constants.INTEGRATION_PROPERTIES;
  */
 public class IntegrationUtils extends CommonUtils {
 
-    private static final Properties integrationProperties = new Properties();
-    private static Path baseDir;
-
     /**
-     * Load the openapi-properties file to find out the updated OpenAPI
-     * It is required to call this method before calling any other methods in this class
+     * Does nothing. The other methods of this class read the hash properties file themselves on every call, so it
+     * no longer has to be loaded up front.
      *
      * @param projectBaseDir the base project directory
-     * @throws IOException if an error occurred while loading the openapi.properties file
+     * @throws IOException never, kept for compatibility
+     * @deprecated no longer needed, call {@link #findUpdatedIntegrations(String)} directly
      */
+    @Deprecated
     public static void loadIntegrationProperties(String projectBaseDir) throws IOException {
-        baseDir = Paths.get(projectBaseDir);
-        try (var fileInputStream =
-                     new FileInputStream(Paths.get(projectBaseDir, INTEGRATION_PROPERTIES).toString())) {
-            integrationProperties.load(fileInputStream);
-        }
     }
 
     /**
@@ -64,35 +50,34 @@ public class IntegrationUtils extends CommonUtils {
      */
     public static List<String> findUpdatedIntegrations(String projectBaseDir)
             throws IOException {
-        List<String> packageDirs;
-        List<String> updatedPackageDirs = new ArrayList<>();
-        try (Stream<Path> path = Files.walk(Paths.get(projectBaseDir))) {
-            packageDirs = path.map(Path::toString).filter(f -> f.contains(BALLERINA_TOML))
-                    .map(s -> s.substring(0, s.lastIndexOf("/"))).collect(Collectors.toList());
-        }
-        for (String packageDir : packageDirs) {
-            if (isPackageChanged(packageDir)) {
-                updatedPackageDirs.add(packageDir);
-            }
-        }
-        return updatedPackageDirs.stream().distinct().collect(Collectors.toList());
+        return findUpdatedIntegrations(projectBaseDir, 1);
     }
 
     /**
-     * Check the OpenAPI file has changes
+     * Get absolute path of each ballerina package which was subjected to a change, in the given root directory.
+     * Packages are hashed concurrently on a pool bounded by the given parallelism level.
      *
-     * @param packageDirectoryPath the path of the OpenAPI file
-     * @return true if OpenAPI file updated, else false
-     * @throws IOException if an error occurred while accessing files inside given path
+     * @param projectBaseDir the base project directory
+     * @param parallelism    maximum number of packages hashed concurrently, 1 hashes the packages sequentially
+     * @return list of ballerina package paths, in the same order as the sequential path
+     */
+    public static List<String> findUpdatedIntegrations(String projectBaseDir, int parallelism)
+            throws IOException {
+        ChangeDetector changeDetector = new ChangeDetector(Paths.get(projectBaseDir),
+                Collections.singletonList(INTEGRATION_PROPERTIES), parallelism);
+        return changeDetector.detect().getUpdatedPackages(INTEGRATION_PROPERTIES);
+    }
+
+    /**
+     * Publish each ballerina package which was subjected to a change as soon as it is found, so that changed
+     * packages can be built while the rest of the project is still being hashed.
+     *
+     * @param projectBaseDir the base project directory
+     * @param parallelism    maximum number of packages hashed concurrently
+     * @return publisher of the changed packages, which starts the detection once subscribed
      */
-    private static boolean isPackageChanged(String packageDirectoryPath) throws IOException {
-        final String oldHash = (String) integrationProperties.get(baseDir.relativize(Paths.get(packageDirectoryPath))
-                .toString());
-        if (oldHash != null) {
-            final String currentHash = generateHashString(packageDirectoryPath);
-            return !oldHash.equalsIgnoreCase(currentHash);
-        }
-        return true;
+    public static PackageChangePublisher publishUpdatedIntegrations(String projectBaseDir, int parallelism) {
+        return new PackageChangePublisher(Paths.get(projectBaseDir), INTEGRATION_PROPERTIES, parallelism);
     }
 
     /**
@@ -104,15 +89,7 @@ public class IntegrationUtils extends CommonUtils {
      */
     public static void updateHashesForIntegrations(String projectBaseDir, List<String> updatedBallerinaPackages)
             throws IOException {
-        loadIntegrationProperties(projectBaseDir);
-        for (String path : updatedBallerinaPackages) {
-            String relativeFilePath = baseDir.relativize(Paths.get(path)).toString();
-            String newHash = generateHashString(relativeFilePath);
-            integrationProperties.setProperty(relativeFilePath, newHash);
-        }
-        baseDir = Paths.get(projectBaseDir);
-        try (var fileInputStream = new FileOutputStream(Paths.get(projectBaseDir, INTEGRATION_PROPERTIES).toString())) {
-            integrationProperties.store(fileInputStream, null);
-        }
+        new ChangeDetector(Paths.get(projectBaseDir), Collections.singletonList(INTEGRATION_PROPERTIES), 1)
+                .updateHashes(INTEGRATION_PROPERTIES, updatedBallerinaPackages);
     }
 }
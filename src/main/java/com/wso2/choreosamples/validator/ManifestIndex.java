@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+
+/**
+ * Compact binary index of a hash properties file, for point lookups in very large manifests without parsing them.
+ * The index holds the size, modification time and XXH64 digest of the manifest it was built from, followed by a table
+ * of record offsets and the records sorted by the UTF-8 bytes of their keys. A lookup maps the index and binary
+ * searches the table. The index is a cache in the cache directory of the project and is ignored once the manifest
+ * changed or a journal is pending. Hashing the manifest on open is far cheaper than parsing it, and catches a
+ * manifest rewritten with the same size within the modification time granularity.
+ */
+public class ManifestIndex {
+
+    static final String SUFFIX = ".index";
+    private static final int MAGIC = 0x43564d49;
+    private static final int VERSION = 2;
+    // Magic, version, manifest size, manifest modification time, manifest digest and record count.
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private ManifestIndex(MappedByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Open the index of a hash properties file.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return the index, or null if there is no index up to date with the manifest
+     */
+    public static ManifestIndex open(Path manifestFile) {
+        Path indexFile = indexFile(manifestFile);
+        if (!Files.isRegularFile(indexFile) || Files.exists(ManifestStore.journalFile(manifestFile))) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            BasicFileAttributes attributes = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != attributes.size()
+                    || buffer.getLong(16) != attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    || buffer.getLong(24) != digest(manifestFile)) {
+                return null;
+            }
+            return new ManifestIndex(buffer, buffer.getInt(32));
+        } catch (IOException | RuntimeException e) {
+            // A missing manifest or a corrupted index only costs a full load.
+            return null;
+        }
+    }
+
+    /**
+     * Write the index of a hash properties file, replacing the previous index.
+     *
+     * @param manifestFile path of the hash properties file, as written for the given entries
+     * @param entries      entries of the manifest
+     * @throws IOException if an error occurred while writing the index
+     */
+    static void build(Path manifestFile, Map<String, String> entries) throws IOException {
+        List<byte[][]> records = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            records.add(new byte[][]{entry.getKey().getBytes(StandardCharsets.UTF_8),
+                    entry.getValue().getBytes(StandardCharsets.UTF_8)});
+        }
+        records.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+        BasicFileAttributes attributes = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(content)) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(attributes.size());
+            output.writeLong(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+            output.writeLong(digest(manifestFile));
+            output.writeInt(records.size());
+            int offset = HEADER_SIZE + 4 * records.size();
+            for (byte[][] record : records) {
+                output.writeInt(offset);
+                offset += 8 + record[0].length + record[1].length;
+            }
+            for (byte[][] record : records) {
+                output.writeInt(record[0].length);
+                output.write(record[0]);
+                output.writeInt(record[1].length);
+                output.write(record[1]);
+            }
+        }
+        Path indexFile = indexFile(manifestFile);
+        Files.createDirectories(indexFile.getParent());
+        ManifestStore.writeAtomically(indexFile, content.toByteArray());
+    }
+
+    private static long digest(Path manifestFile) throws IOException {
+        FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+        try (FileChannel channel = FileChannel.open(manifestFile, StandardOpenOption.READ)) {
+            hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        return Long.parseUnsignedLong(hasher.getHashString(), 16);
+    }
+
+    /**
+     * Get the index file of a hash properties file.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return path of its index in the cache directory
+     */
+    static Path indexFile(Path manifestFile) {
+        return manifestFile.resolveSibling(CACHE_DIR).resolve(manifestFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Look up a single entry.
+     *
+     * @param key entry key
+     * @return entry value, or null if the manifest has no such entry
+     */
+    public String lookup(String key) {
+        byte[] target = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(HEADER_SIZE + 4 * middle);
+            int keyLength = buffer.getInt(offset);
+            int comparison = compare(offset + 4, keyLength, target);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                int valueOffset = offset + 4 + keyLength;
+                byte[] value = new byte[buffer.getInt(valueOffset)];
+                buffer.duplicate().position(valueOffset + 4).get(value);
+                return new String(value, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private int compare(int offset, int length, byte[] target) {
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + i), target[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, target.length);
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+
+/**
+ * Store of a hash properties file.
+ * The file is written sorted by key, without a timestamp, in the <code>.properties</code> syntax, so it stays
+ * readable by {@link Properties} and legacy files are read as is. Every write goes to a temp file which is synced
+ * before it atomically replaces the manifest, so a crash never leaves a truncated manifest. Entries can be appended
+ * to a journal next to the manifest instead, a batch at a time with a single sync, and the journal is folded into
+ * the manifest once the number of appended lines grows past a fraction of the manifest. Loading scans the raw bytes
+ * of the file and only allocates the key and value strings of each entry. Manifests of at least
+ * {@link #INDEX_MIN_ENTRIES} entries also keep a {@link ManifestIndex} for point lookups.
+ */
+public class ManifestStore {
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String HEADER = "# choreo-sample-validator hash manifest, sorted by package";
+
+    /**
+     * The journal is compacted once it holds this many lines and at least an eighth of the manifest entries.
+     */
+    static final int MIN_COMPACTION_ENTRIES = 64;
+
+    /**
+     * Manifests with at least this many entries keep a binary index.
+     */
+    static final int INDEX_MIN_ENTRIES = 10000;
+
+    /**
+     * Monitor of each lock file, held by the writers of this process.
+     */
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path manifestFile;
+    private final TreeMap<String, String> entries;
+
+    private ManifestStore(Path manifestFile, TreeMap<String, String> entries) {
+        this.manifestFile = manifestFile;
+        this.entries = entries;
+    }
+
+    /**
+     * Load a hash properties file along with its journal.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return the loaded store
+     * @throws IOException if the file doesn't exist or an error occurred while reading it
+     */
+    public static ManifestStore load(Path manifestFile) throws IOException {
+        if (!Files.isRegularFile(manifestFile) && !Files.isRegularFile(journalFile(manifestFile))) {
+            throw new NoSuchFileException(manifestFile.toString());
+        }
+        return loadIfExists(manifestFile);
+    }
+
+    /**
+     * Load a hash properties file along with its journal. A missing file results in an empty store.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return the loaded store
+     * @throws IOException if an error occurred while reading the file
+     */
+    public static ManifestStore loadIfExists(Path manifestFile) throws IOException {
+        TreeMap<String, String> entries = new TreeMap<>();
+        if (Files.isRegularFile(manifestFile)) {
+            parse(Files.readAllBytes(manifestFile), entries);
+        }
+        Path journalFile = journalFile(manifestFile);
+        if (Files.isRegularFile(journalFile)) {
+            byte[] journal = Files.readAllBytes(journalFile);
+            parse(journal, completeLength(journal), entries);
+        }
+        return new ManifestStore(manifestFile, entries);
+    }
+
+    /**
+     * Create an empty store, which replaces the file and drops its journal on the next {@link #save()}.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return the empty store
+     */
+    public static ManifestStore create(Path manifestFile) {
+        return new ManifestStore(manifestFile, new TreeMap<>());
+    }
+
+    /**
+     * Look up a single entry of a hash properties file, through its index when the index is up to date.
+     *
+     * @param manifestFile path of the hash properties file
+     * @param key          entry key
+     * @return entry value, or null if the manifest has no such entry
+     * @throws IOException if the file doesn't exist or an error occurred while reading it
+     */
+    public static String lookup(Path manifestFile, String key) throws IOException {
+        return openLookup(manifestFile).apply(key);
+    }
+
+    /**
+     * Open a hash properties file for point lookups, through its index when the index is up to date, otherwise by
+     * loading the manifest.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return lookup of the entry value of a key, null if the manifest has no such entry
+     * @throws IOException if the file doesn't exist or an error occurred while reading it
+     */
+    public static UnaryOperator<String> openLookup(Path manifestFile) throws IOException {
+        ManifestIndex index = ManifestIndex.open(manifestFile);
+        return index != null ? index::lookup : load(manifestFile)::get;
+    }
+
+    /**
+     * Get the journal file of a hash properties file.
+     *
+     * @param manifestFile path of the hash properties file
+     * @return path of its journal
+     */
+    public static Path journalFile(Path manifestFile) {
+        return manifestFile.resolveSibling(manifestFile.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    public String get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Set an entry in memory, written by the next {@link #save()}.
+     *
+     * @param key   entry key
+     * @param value entry value
+     */
+    public void put(String key, String value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Remove an entry in memory, written by the next {@link #save()}.
+     *
+     * @param key entry key
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Get the entries of the manifest.
+     *
+     * @return entries sorted by key
+     */
+    public SortedMap<String, String> getEntries() {
+        return Collections.unmodifiableSortedMap(entries);
+    }
+
+    /**
+     * Copy the entries into a {@link Properties} instance.
+     *
+     * @return the entries as properties
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        return properties;
+    }
+
+    /**
+     * Write the whole manifest atomically and fold the journal into it. The manifest is locked like
+     * {@link #appendAll(Map)} does, so no append lands in a journal which is then deleted.
+     *
+     * @throws IOException if an error occurred while writing the manifest
+     */
+    public void save() throws IOException {
+        withLock(this::writeManifest);
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            appendEntry(content, entry.getKey(), entry.getValue());
+        }
+        writeAtomically(manifestFile, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+        Files.deleteIfExists(journalFile(manifestFile));
+        if (entries.size() >= INDEX_MIN_ENTRIES) {
+            try {
+                ManifestIndex.build(manifestFile, entries);
+            } catch (IOException e) {
+                // The index is only an optimization, lookups fall back to loading the manifest.
+            }
+        } else {
+            Files.deleteIfExists(ManifestIndex.indexFile(manifestFile));
+        }
+    }
+
+    /**
+     * Set a single entry by appending it to the journal, compacting the journal into the manifest when it has grown.
+     *
+     * @param key   entry key
+     * @param value entry value
+     * @throws IOException if an error occurred while writing the journal or the manifest
+     */
+    public void append(String key, String value) throws IOException {
+        appendAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Set the given entries by appending them to the journal with a single write and sync, compacting the journal
+     * into the manifest when it has grown. The journal is locked while appending, so lines appended by other
+     * processes since this store was loaded are kept, and only a torn last line of an interrupted append is dropped.
+     *
+     * @param batch entries to set, appended in iteration order
+     * @throws IOException if an error occurred while writing the journal or the manifest
+     */
+    public void appendAll(Map<String, String> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            appendEntry(lines, entry.getKey(), entry.getValue());
+        }
+        withLock(() -> appendLocked(batch, lines));
+    }
+
+    private void appendLocked(Map<String, String> batch, StringBuilder lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile(manifestFile), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The journal is bounded by compaction, so it's read whole to find its last complete line.
+            ByteBuffer journal = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (journal.hasRemaining()) {
+                if (channel.read(journal, journal.position()) < 0) {
+                    break;
+                }
+            }
+            int end = completeLength(journal.array());
+            Map<String, String> journaled = new TreeMap<>();
+            // Counted per appended line rather than per distinct key, so re-appended keys still lead to compaction.
+            int journalEntries = parse(journal.array(), end, journaled) + batch.size();
+            entries.putAll(journaled);
+            entries.putAll(batch);
+            if (journalEntries >= Math.max(MIN_COMPACTION_ENTRIES, entries.size() / 8)) {
+                writeManifest();
+                return;
+            }
+            channel.truncate(end);
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.ISO_8859_1));
+            long position = end;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Run a write of the manifest or its journal under the manifest lock. The journal itself is deleted by
+     * compaction, so writers serialize on a lock file which stays in place. A file lock is held on behalf of the whole
+     * process, so the writers of this process also serialize on a monitor of the lock file.
+     */
+    private void withLock(LockedWrite write) throws IOException {
+        Path lockFile = manifestFile.toAbsolutePath().normalize().resolveSibling(CACHE_DIR)
+                .resolve(manifestFile.getFileName() + LOCK_SUFFIX);
+        Files.createDirectories(lockFile.getParent());
+        synchronized (LOCKS.computeIfAbsent(lockFile, key -> new Object())) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+                 FileLock lock = lockChannel.lock()) {
+                write.run();
+            }
+        }
+    }
+
+    /**
+     * Length of the given journal content up to the end of its last complete line.
+     */
+    private static int completeLength(byte[] journal) {
+        int end = journal.length;
+        while (end > 0 && journal[end - 1] != '\n') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Write a file through a synced temp file in the same directory, which then atomically replaces the target. The
+     * temp file is created readable by its owner only, so it takes the permissions of the file it replaces.
+     *
+     * @param file    file to write
+     * @param content new content of the file
+     * @throws IOException if an error occurred while writing the file
+     */
+    static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(dir, "." + file.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            CommonUtils.copyPermissions(file, tempFile);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory, the rename itself is still atomic.
+        }
+    }
+
+    private static void parse(byte[] content, Map<String, String> entries) {
+        parse(content, content.length, entries);
+    }
+
+    /**
+     * Parse <code>.properties</code> content. Plain <code>key=value</code> lines are sliced straight out of the
+     * bytes, lines with escapes or continuations go through {@link Properties}.
+     *
+     * @return number of entries read, including entries overriding an earlier entry of the same key
+     */
+    private static int parse(byte[] content, int length, Map<String, String> entries) {
+        int count = 0;
+        int position = 0;
+        while (position < length) {
+            int lineEnd = position;
+            boolean escaped = false;
+            while (lineEnd < length && content[lineEnd] != '\n' && content[lineEnd] != '\r') {
+                escaped |= content[lineEnd] == '\\';
+                lineEnd++;
+            }
+            int start = position;
+            while (start < lineEnd && isWhitespace(content[start])) {
+                start++;
+            }
+            if (start == lineEnd || content[start] == '#' || content[start] == '!') {
+                position = lineEnd + 1;
+                continue;
+            }
+            if (escaped) {
+                // Extend over continuation lines, which end with an odd number of backslashes.
+                while (lineEnd < length && endsWithContinuation(content, start, lineEnd)) {
+                    lineEnd++;
+                    if (lineEnd < length && content[lineEnd - 1] == '\r' && content[lineEnd] == '\n') {
+                        lineEnd++;
+                    }
+                    while (lineEnd < length && content[lineEnd] != '\n' && content[lineEnd] != '\r') {
+                        lineEnd++;
+                    }
+                }
+                Properties properties = new Properties();
+                try {
+                    properties.load(new StringReader(new String(content, start, lineEnd - start,
+                            StandardCharsets.ISO_8859_1)));
+                } catch (IOException | IllegalArgumentException e) {
+                    position = lineEnd + 1;
+                    continue;
+                }
+                for (String key : properties.stringPropertyNames()) {
+                    entries.put(key, properties.getProperty(key));
+                    count++;
+                }
+                position = lineEnd + 1;
+                continue;
+            }
+            int keyEnd = start;
+            while (keyEnd < lineEnd && content[keyEnd] != '=' && content[keyEnd] != ':'
+                    && !isWhitespace(content[keyEnd])) {
+                keyEnd++;
+            }
+            int valueStart = keyEnd;
+            while (valueStart < lineEnd && isWhitespace(content[valueStart])) {
+                valueStart++;
+            }
+            if (valueStart < lineEnd && (content[valueStart] == '=' || content[valueStart] == ':')) {
+                valueStart++;
+                while (valueStart < lineEnd && isWhitespace(content[valueStart])) {
+                    valueStart++;
+                }
+            }
+            entries.put(new String(content, start, keyEnd - start, StandardCharsets.ISO_8859_1),
+                    new String(content, valueStart, lineEnd - valueStart, StandardCharsets.ISO_8859_1));
+            count++;
+            position = lineEnd + 1;
+        }
+        return count;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\f';
+    }
+
+    private static boolean endsWithContinuation(byte[] content, int start, int lineEnd) {
+        int backslashes = 0;
+        for (int i = lineEnd - 1; i >= start && content[i] == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    /**
+     * Append an entry in the escaping of {@link Properties#store(java.io.OutputStream, String)}, so the file stays
+     * loadable by {@link Properties}.
+     */
+    private static void appendEntry(StringBuilder out, String key, String value) {
+        escape(out, key, true);
+        out.append('=');
+        escape(out, value, false);
+        out.append('\n');
+    }
+
+    private static void escape(StringBuilder out, String text, boolean isKey) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case ' ':
+                    if (i == 0 || isKey) {
+                        out.append('\\');
+                    }
+                    out.append(' ');
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                case '\\':
+                    out.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        out.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Write run under the manifest lock.
+     */
+    @FunctionalInterface
+    private interface LockedWrite {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import static com.wso2.choreosamples.validator.Constants.MD5;
+
+/**
+ * MD5 package fingerprint, the default algorithm of the hash properties files.
+ */
+public class Md5Fingerprint implements FingerprintAlgorithm {
+
+    @Override
+    public String getName() {
+        return MD5;
+    }
+
+    @Override
+    public FingerprintHasher newHasher() {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        return new FingerprintHasher() {
+            @Override
+            public void update(byte[] input, int offset, int length) {
+                digest.update(input, offset, length);
+            }
+
+            @Override
+            public void update(ByteBuffer input) {
+                digest.update(input);
+            }
+
+            @Override
+            public String getHashString() {
+                return Hex.encodeHexString(digest.digest());
+            }
+        };
+    }
+}
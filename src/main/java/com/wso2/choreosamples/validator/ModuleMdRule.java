@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.wso2.choreosamples.validator.Constants.MODULE_MD;
+
+/**
+ * Checks that every module of the package, i.e. every directory under <code>modules</code> holding files, has a
+ * module documentation file that is not empty.
+ */
+public class ModuleMdRule implements PrecheckRule {
+
+    private static final Path MODULES = Paths.get("modules");
+
+    @Override
+    public String getName() {
+        return "module-md";
+    }
+
+    @Override
+    public List<String> check(PackageSnapshot snapshot) {
+        Set<Path> moduleDirs = new TreeSet<>();
+        for (Path file : snapshot.getFiles().keySet()) {
+            if (file.getNameCount() > 2 && file.startsWith(MODULES)) {
+                moduleDirs.add(file.subpath(0, 2));
+            }
+        }
+        List<String> violations = new ArrayList<>();
+        for (Path moduleDir : moduleDirs) {
+            BasicFileAttributes attributes = snapshot.getAttributes(moduleDir.resolve(MODULE_MD));
+            if (attributes == null) {
+                violations.add(MODULE_MD + " doesn't exist in module " + moduleDir.getFileName());
+            } else if (attributes.size() == 0) {
+                violations.add(MODULE_MD + " is empty in module " + moduleDir.getFileName());
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.ParseOptions;
+import io.swagger.v3.parser.core.models.SwaggerParseResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.OPENAPI_CACHE;
+
+/**
+ * Validates the OpenAPI contracts shipped with the Ballerina packages.
+ * Candidate files are found by {@link FileType} and recognized as specs by an {@code openapi} key within their first
+ * bytes, then validated in parallel. Results are cached across runs by a key derived from the content of the spec and
+ * of every file it references, directly or through other referenced files, so unchanged specs are never parsed again.
+ * Within a run the cache keys read each spec and referenced file once and only one spec of each key is parsed.
+ * A spec without external references is parsed without reference resolution. The resolver of the parser only caches
+ * within a single spec, so a spec with external references still has the parser resolve them from disk. Recognizing
+ * the specs isn't hashing, so the candidate files are not counted in the hashing metrics. The cache only keeps the
+ * results of the specs of the last run.
+ */
+public class OpenApiValidator {
+
+    private static final Set<FileType> SPEC_FILE_TYPES = EnumSet.of(FileType.YAML, FileType.YML, FileType.JSON);
+    private static final Pattern OPENAPI_VERSION = Pattern.compile("^\\s*[\"']?openapi[\"']?\\s*:", Pattern.MULTILINE);
+    private static final int SPEC_PREFIX_BYTES = 8192;
+    private static final Pattern EXTERNAL_REF =
+            Pattern.compile("[\"']?\\$ref[\"']?\\s*:\\s*[\"']?([^\"'#\\s,}]+)");
+    private static final String HEADER = "# choreo-sample-validator openapi cache v2";
+    private static final String SPEC = "spec";
+    private static final String MESSAGE = "message";
+
+    /**
+     * Validate the OpenAPI specs of the given packages.
+     *
+     * @param projectBaseDir the base project directory
+     * @param packageDirs    paths of the Ballerina packages to validate
+     * @param parallelism    maximum number of specs validated concurrently
+     * @return validation errors of each package with at least one invalid spec, prefixed by the spec path
+     * @throws IOException if an error occurred while reading the specs
+     */
+    public static Map<String, List<String>> validateOpenApiSpecs(String projectBaseDir, List<String> packageDirs,
+                                                                 int parallelism) throws IOException {
+        Path baseDir = Paths.get(projectBaseDir);
+        Map<String, List<String>> cachedResults = loadCache(baseDir);
+        Map<String, CompletableFuture<List<String>>> results = new ConcurrentHashMap<>();
+        Map<Path, ReferencedFile> referencedFiles = new ConcurrentHashMap<>();
+
+        List<Path> specs = new ArrayList<>();
+        List<String> specPackages = new ArrayList<>();
+        for (String packageDir : packageDirs) {
+            List<File> files = new ArrayList<>();
+            CommonUtils.collectFiles(new File(packageDir), files);
+            for (File file : files) {
+                if (hasSpecExtension(file.toPath())) {
+                    specs.add(file.toPath());
+                    specPackages.add(packageDir);
+                }
+            }
+        }
+
+        List<List<String>> specErrors;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // Candidates that turn out not to be specs validate to no errors.
+            specErrors = pool.submit(() -> specs.parallelStream()
+                    .map(spec -> validateCandidate(spec, cachedResults, results, referencedFiles))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating OpenAPI specs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to validate OpenAPI specs", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, List<String>> errors = new TreeMap<>();
+        for (int i = 0; i < specs.size(); i++) {
+            if (!specErrors.get(i).isEmpty()) {
+                String specPath = Paths.get(specPackages.get(i)).relativize(specs.get(i)).toString();
+                List<String> packageErrors = errors.computeIfAbsent(specPackages.get(i), k -> new ArrayList<>());
+                for (String message : specErrors.get(i)) {
+                    packageErrors.add(specPath + ": " + message);
+                }
+            }
+        }
+        // Only the results of the specs seen in this run are kept, so the cache doesn't grow with every edit.
+        Map<String, List<String>> seenResults = new TreeMap<>();
+        results.forEach((key, result) -> seenResults.put(key, result.join()));
+        saveCache(baseDir, seenResults);
+        return errors;
+    }
+
+    /**
+     * Validate the OpenAPI specs of the given packages and fail with every error found.
+     *
+     * @param projectBaseDir the base project directory
+     * @param packageDirs    paths of the Ballerina packages to validate
+     * @param parallelism    maximum number of specs validated concurrently
+     * @throws IOException        if an error occurred while reading the specs
+     * @throws ValidatorException if any of the specs is invalid
+     */
+    public static void validateOrThrow(String projectBaseDir, List<String> packageDirs, int parallelism)
+            throws IOException, ValidatorException {
+        Map<String, List<String>> errors = validateOpenApiSpecs(projectBaseDir, packageDirs, parallelism);
+        if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder("Invalid OpenAPI specs found");
+            for (Map.Entry<String, List<String>> packageErrors : errors.entrySet()) {
+                message.append(System.lineSeparator()).append(packageErrors.getKey());
+                for (String error : packageErrors.getValue()) {
+                    message.append(System.lineSeparator()).append("  ").append(error);
+                }
+            }
+            throw new ValidatorException(message.toString());
+        }
+    }
+
+    private static boolean hasSpecExtension(Path file) {
+        String fileName = file.getFileName().toString();
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        for (FileType fileType : SPEC_FILE_TYPES) {
+            if (fileType.getValue().equals(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read a candidate file if it is an OpenAPI spec. Only the first 8 KB are read to recognize the {@code openapi}
+     * key, and a file that is not valid UTF-8 there is not a spec.
+     *
+     * @param file candidate spec file
+     * @return the content of the spec, or null if the file is not a spec
+     * @throws IOException if an error occurred while reading the file
+     */
+    static byte[] readIfSpec(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(size, SPEC_PREFIX_BYTES));
+            while (prefix.hasRemaining() && channel.read(prefix) >= 0) {
+                // Fill the prefix, a read may return fewer bytes than asked for.
+            }
+            prefix.flip();
+            if (!hasOpenApiKey(prefix.duplicate())) {
+                return null;
+            }
+            // The rest of the spec is read from where the prefix ended, so the spec is read once for both.
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8));
+            content.write(prefix.array(), 0, prefix.limit());
+            Channels.newInputStream(channel).transferTo(content);
+            return content.toByteArray();
+        }
+    }
+
+    private static boolean hasOpenApiKey(ByteBuffer prefix) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(prefix.remaining());
+        // Not the end of input, so a character cut at the end of the prefix isn't a decoding error.
+        if (decoder.decode(prefix, chars, false).isError()) {
+            return false;
+        }
+        chars.flip();
+        return OPENAPI_VERSION.matcher(chars).find();
+    }
+
+    private static List<String> validateCandidate(Path file, Map<String, List<String>> cachedResults,
+                                                  Map<String, CompletableFuture<List<String>>> results,
+                                                  Map<Path, ReferencedFile> referencedFiles) {
+        Path spec = file.toAbsolutePath().normalize();
+        String key;
+        try {
+            byte[] content = readIfSpec(file);
+            if (content == null) {
+                return Collections.emptyList();
+            }
+            referencedFiles.putIfAbsent(spec, ReferencedFile.of(spec, content));
+            key = cacheKey(spec, referencedFiles);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = results.putIfAbsent(key, result);
+        if (existing != null) {
+            // Another spec with the same key is parsed, or was already parsed, in this run.
+            return existing.join();
+        }
+        List<String> cached = cachedResults.get(key);
+        try {
+            result.complete(cached != null ? cached : parse(file, !referencedFiles.get(spec).refs.isEmpty()));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+        return result.join();
+    }
+
+    /**
+     * Key of the validation result of a spec, covering the spec and every external file it references, directly or
+     * through other referenced files. Referenced files are identified by their path relative to the spec, so copies
+     * of the same spec tree share a key.
+     */
+    static String cacheKey(Path spec, Map<Path, ReferencedFile> referencedFiles) throws IOException {
+        Path specDir = spec.toAbsolutePath().normalize().getParent();
+        Map<String, String> reachable = new TreeMap<>();
+        Set<Path> visited = new HashSet<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.add(spec.toAbsolutePath().normalize());
+        while (!pending.isEmpty()) {
+            Path file = pending.poll();
+            // The visited set also stops reference cycles.
+            if (!visited.add(file)) {
+                continue;
+            }
+            String relativePath = specDir.relativize(file).toString();
+            if (!Files.isRegularFile(file)) {
+                reachable.put(relativePath, "missing");
+                continue;
+            }
+            ReferencedFile referencedFile = referencedFiles.get(file);
+            if (referencedFile == null) {
+                referencedFile = ReferencedFile.read(file);
+                referencedFiles.put(file, referencedFile);
+            }
+            reachable.put(relativePath, referencedFile.hash);
+            pending.addAll(referencedFile.refs);
+        }
+        StringBuilder key = new StringBuilder();
+        reachable.forEach((relativePath, hash) -> key.append(relativePath).append('\0').append(hash).append('\n'));
+        FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+        byte[] keyBytes = key.toString().getBytes(StandardCharsets.UTF_8);
+        hasher.update(keyBytes, 0, keyBytes.length);
+        return hasher.getHashString();
+    }
+
+    private static List<String> parse(Path spec, boolean resolve) {
+        ParseOptions options = new ParseOptions();
+        options.setResolve(resolve);
+        SwaggerParseResult result;
+        try {
+            result = new OpenAPIV3Parser().readLocation(spec.toUri().toString(), null, options);
+        } catch (RuntimeException e) {
+            // A parser failure is an error of this spec, it doesn't stop the validation of the others.
+            return Collections.singletonList(
+                    ("Unable to parse the OpenAPI spec: " + e).replace('\n', ' ').replace('\r', ' '));
+        }
+        List<String> messages = new ArrayList<>();
+        if (result == null || result.getOpenAPI() == null) {
+            messages.add("Unable to parse the OpenAPI spec");
+        }
+        if (result != null && result.getMessages() != null) {
+            for (String message : result.getMessages()) {
+                messages.add(message.replace('\n', ' ').replace('\r', ' '));
+            }
+        }
+        return Collections.unmodifiableList(messages);
+    }
+
+    /**
+     * Content hash and local references of a spec or of a file referenced by a spec.
+     */
+    static class ReferencedFile {
+        final String hash;
+        final List<Path> refs;
+
+        private ReferencedFile(String hash, List<Path> refs) {
+            this.hash = hash;
+            this.refs = refs;
+        }
+
+        static ReferencedFile read(Path file) throws IOException {
+            return of(file, Files.readAllBytes(file));
+        }
+
+        static ReferencedFile of(Path file, byte[] content) {
+            FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+            hasher.update(content, 0, content.length);
+            List<Path> refs = new ArrayList<>();
+            Matcher ref = EXTERNAL_REF.matcher(new String(content, StandardCharsets.UTF_8));
+            while (ref.find()) {
+                String target = ref.group(1);
+                if (!target.contains("://")) {
+                    refs.add(file.resolveSibling(target).normalize());
+                }
+            }
+            return new ReferencedFile(hasher.getHashString(), refs);
+        }
+    }
+
+    private static Map<String, List<String>> loadCache(Path baseDir) {
+        Path cacheFile = baseDir.resolve(CACHE_DIR).resolve(OPENAPI_CACHE);
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+        if (!Files.isRegularFile(cacheFile)) {
+            return results;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return results;
+            }
+            List<String> messages = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(SPEC + " ")) {
+                    messages = new ArrayList<>();
+                    results.put(line.substring(SPEC.length() + 1), messages);
+                } else if (line.startsWith(MESSAGE + " ") && messages != null) {
+                    messages.add(line.substring(MESSAGE.length() + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupted cache only costs parsing the specs again.
+            return new ConcurrentHashMap<>();
+        }
+        return results;
+    }
+
+    private static void saveCache(Path baseDir, Map<String, List<String>> results) throws IOException {
+        Path cacheFile = baseDir.resolve(CACHE_DIR).resolve(OPENAPI_CACHE);
+        Files.createDirectories(cacheFile.getParent());
+        Path tempFile = Files.createTempFile(cacheFile.getParent(), OPENAPI_CACHE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, List<String>> result : new TreeMap<>(results).entrySet()) {
+                writer.write(SPEC + " " + result.getKey());
+                writer.newLine();
+                for (String message : result.getValue()) {
+                    writer.write(MESSAGE + " " + message);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.wso2.choreosamples.validator.Constants.ARCHIVE_CACHE;
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+
+/**
+ * Packages Ballerina packages into deterministic zip archives.
+ * An archive holds the same files as the package hash, in the same order, with a fixed timestamp on every entry, so
+ * the same package content always produces the same bytes. Archives are kept in a content addressed cache in the cache
+ * directory of the project, keyed by the package and its Merkle root, hence an unchanged package reuses its previous
+ * archive instead of being compressed again. Only the current archive of each package is kept.
+ */
+public class PackageArchiver {
+
+    /**
+     * Version of the archive layout, part of the cache key so that a layout change never reuses older archives.
+     */
+    private static final String ARCHIVE_VERSION = "v1";
+
+    /**
+     * Timestamp of every archive entry. Set as a local date time, so it doesn't depend on the time zone.
+     */
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0);
+
+    /**
+     * Number of times a package is archived again when it changes while being archived.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Only used within a single file copy, so a thread never shares its buffer between two files.
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    /**
+     * Archive the given packages, reusing the cached archives of unchanged packages.
+     *
+     * @param projectBaseDir the base project directory
+     * @param packageDirs    paths of the Ballerina packages to archive
+     * @param parallelism    maximum number of packages archived concurrently
+     * @return archive path of each package, in the same order as the given package list
+     * @throws IOException if an error occurred while reading a package or writing an archive
+     */
+    public static Map<String, Path> archivePackages(String projectBaseDir, List<String> packageDirs, int parallelism)
+            throws IOException {
+        Path baseDir = Paths.get(projectBaseDir);
+        Path archiveDir = baseDir.resolve(CACHE_DIR).resolve(ARCHIVE_CACHE);
+        Files.createDirectories(archiveDir);
+        FileStatCache hashCache = FileStatCache.load(baseDir);
+
+        List<Path> archives;
+        if (packageDirs.isEmpty()) {
+            archives = Collections.emptyList();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                archives = pool.submit(() -> packageDirs.parallelStream()
+                        .map(packageDir -> archivePackage(packageDir, archiveDir, hashCache))
+                        .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while archiving packages", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw new IOException("Failed to archive packages", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        hashCache.save();
+
+        Map<String, Path> packageArchives = new LinkedHashMap<>();
+        for (int i = 0; i < packageDirs.size(); i++) {
+            packageArchives.put(packageDirs.get(i), archives.get(i));
+        }
+        return packageArchives;
+    }
+
+    /**
+     * Write the deterministic archive of a package to the given stream.
+     *
+     * @param packageDir path to the Ballerina package
+     * @param out        stream to write the archive to, left open
+     * @throws IOException if an error occurred while reading the package
+     */
+    public static void writeArchive(String packageDir, OutputStream out) throws IOException {
+        Path packagePath = Paths.get(packageDir);
+        List<File> files = new ArrayList<>();
+        CommonUtils.collectFiles(packagePath.toFile(), files);
+        ZipOutputStream zip = new ZipOutputStream(out);
+        byte[] buffer = BUFFERS.get();
+        for (File file : files) {
+            ZipEntry entry = new ZipEntry(packagePath.relativize(file.toPath()).toString()
+                    .replace(File.separatorChar, '/'));
+            entry.setTimeLocal(ENTRY_TIME);
+            zip.putNextEntry(entry);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                while (channel.read(byteBuffer) != -1) {
+                    zip.write(buffer, 0, byteBuffer.position());
+                    byteBuffer.clear();
+                }
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    private static Path archivePackage(String packageDir, Path archiveDir, FileStatCache hashCache) {
+        try {
+            String packageId = packageId(packageDir, hashCache);
+            String merkleRoot = merkleRoot(packageDir, hashCache);
+            for (int attempt = 1; ; attempt++) {
+                Path archive = archiveDir.resolve(packageId + "-" + ARCHIVE_VERSION + "-"
+                        + FileStatCache.FILE_ALGORITHM.getName() + "-" + merkleRoot + ".zip");
+                if (!Files.isRegularFile(archive)) {
+                    Path tempFile = Files.createTempFile(archiveDir, packageId, ".tmp");
+                    try {
+                        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile),
+                                BUFFER_SIZE)) {
+                            writeArchive(packageDir, out);
+                        }
+                        // A file modified while the archive was written no longer matches its cached stat, so the
+                        // archive is only kept under the Merkle root of the content it holds.
+                        String writtenRoot = merkleRoot(packageDir, hashCache);
+                        if (!writtenRoot.equals(merkleRoot)) {
+                            if (attempt == MAX_ATTEMPTS) {
+                                throw new IOException("Package " + packageDir + " kept changing while archived");
+                            }
+                            merkleRoot = writtenRoot;
+                            continue;
+                        }
+                        Files.move(tempFile, archive, StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } finally {
+                        Files.deleteIfExists(tempFile);
+                    }
+                }
+                evictArchives(archiveDir, packageId, archive);
+                return archive;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String merkleRoot(String packageDir, FileStatCache hashCache) throws IOException {
+        return IncrementalHasher.hashPackage(packageDir, hashCache, FileStatCache.FILE_ALGORITHM).getMerkleRoot();
+    }
+
+    /**
+     * Identifier of a package in the archive names, the digest of its path relative to the project.
+     */
+    private static String packageId(String packageDir, FileStatCache hashCache) {
+        FingerprintHasher hasher = FileStatCache.FILE_ALGORITHM.newHasher();
+        byte[] key = hashCache.packageKey(Paths.get(packageDir)).replace(File.separatorChar, '/')
+                .getBytes(StandardCharsets.UTF_8);
+        hasher.update(key, 0, key.length);
+        return hasher.getHashString();
+    }
+
+    /**
+     * Delete the archives of a package other than its current archive.
+     */
+    private static void evictArchives(Path archiveDir, String packageId, Path archive) throws IOException {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(archiveDir, packageId + "-*.zip")) {
+            for (Path previous : archives) {
+                if (!previous.equals(archive)) {
+                    Files.deleteIfExists(previous);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+/**
+ * Change of a single Ballerina package against a hash properties file.
+ */
+public class PackageChange {
+
+    /**
+     * Why a package is reported as changed.
+     */
+    public enum Reason {
+        /**
+         * The hash properties file has no entry for the package.
+         */
+        ADDED,
+        /**
+         * The package no longer matches its entry in the hash properties file.
+         */
+        MODIFIED
+    }
+
+    private final String packageDir;
+    private final String oldHash;
+    private final String newHash;
+    private final Reason reason;
+
+    PackageChange(String packageDir, String oldHash, String newHash, Reason reason) {
+        this.packageDir = packageDir;
+        this.oldHash = oldHash;
+        this.newHash = newHash;
+        this.reason = reason;
+    }
+
+    public String getPackageDir() {
+        return packageDir;
+    }
+
+    /**
+     * Get the fingerprint stored in the hash properties file.
+     *
+     * @return the stored fingerprint, or null for an added package
+     */
+    public String getOldHash() {
+        return oldHash;
+    }
+
+    /**
+     * Get the current fingerprint of the package, in the format of the hash properties file.
+     *
+     * @return the current fingerprint
+     */
+    public String getNewHash() {
+        return newHash;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return reason + " " + packageDir;
+    }
+}
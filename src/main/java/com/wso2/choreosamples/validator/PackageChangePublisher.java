@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static com.wso2.choreosamples.validator.Constants.FINGERPRINT_ALGORITHM_KEY;
+
+/**
+ * Publishes the changed Ballerina packages of a project as soon as each package is classified, so the packages can
+ * be built while the rest of the project is still being hashed.
+ * Discovery, hashing and comparison run as a pipeline of {@link SubmissionPublisher} stages. Packages are hashed on
+ * a fork-join pool bounded by the parallelism level, while the stages hand packages over on threads of their own, so
+ * a hashing worker blocked on a full stage never holds up the stage draining it. Each stage has a bounded buffer and
+ * blocks when the next stage falls behind, and hashing requests a new package only when one of its workers is free,
+ * so a slow subscriber throttles the whole pipeline. Changes are published in the order the packages finish hashing.
+ * The packages in flight are bounded by the buffers and the parallelism level, so the pipeline itself doesn't grow
+ * with the project. The state shared with the other scanners still does: the {@link PackageIndex} built by the
+ * discovery walk holds every package path and walked directory, the {@link FileStatCache} holds every hashed file,
+ * and a hash properties file too small to have a {@link ManifestIndex} is loaded whole.
+ * When the subscriber cancels, the packages in flight are still hashed and the file stat cache is saved with every
+ * package hashed so far, then the pools are shut down.
+ * Only packages found in the project are published. A package removed from the project still has its entry in the
+ * hash properties file, which is looked up by package, so it is not reported as a change.
+ */
+public class PackageChangePublisher implements Flow.Publisher<PackageChange> {
+
+    /**
+     * Default buffer size of each stage.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    private final Path baseDir;
+    private final Path manifestFile;
+    private final int parallelism;
+    private final int bufferSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicInteger hashedPackages = new AtomicInteger();
+    private volatile ExecutorService[] pools = new ExecutorService[0];
+
+    /**
+     * Create a publisher of the packages changed against the given hash properties file.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file, e.g. service.properties
+     * @param parallelism    maximum number of packages hashed concurrently
+     */
+    public PackageChangePublisher(Path projectBaseDir, String manifestName, int parallelism) {
+        this(projectBaseDir, manifestName, parallelism, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a publisher of the packages changed against the given hash properties file.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file, e.g. service.properties
+     * @param parallelism    maximum number of packages hashed concurrently
+     * @param bufferSize     maximum number of packages buffered between two stages
+     */
+    public PackageChangePublisher(Path projectBaseDir, String manifestName, int parallelism, int bufferSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism level: " + parallelism);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.baseDir = projectBaseDir;
+        this.manifestFile = projectBaseDir.resolve(manifestName);
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Start the pipeline for the given subscriber. A publisher runs the pipeline once, so it accepts a single
+     * subscriber.
+     *
+     * @param subscriber subscriber of the changes
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super PackageChange> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            fail(subscriber, new IllegalStateException("Package changes of " + manifestFile
+                    + " are already published"));
+            return;
+        }
+        UnaryOperator<String> manifest;
+        FingerprintAlgorithm algorithm;
+        try {
+            // Point lookups through the index keep large manifests out of memory.
+            manifest = ManifestStore.openLookup(manifestFile);
+            String algorithmName = manifest.apply(FINGERPRINT_ALGORITHM_KEY);
+            algorithm = algorithmName != null ? FingerprintAlgorithms.forName(algorithmName)
+                    : FingerprintAlgorithms.MD5;
+        } catch (IOException | IllegalArgumentException e) {
+            fail(subscriber, e);
+            return;
+        }
+
+        ForkJoinPool hashingPool = new ForkJoinPool(parallelism);
+        // Runs the discovery walk and the delivery of each stage, at most one thread each.
+        ExecutorService stagePool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "package-change-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pools = new ExecutorService[]{hashingPool, stagePool};
+        SubmissionPublisher<String> discovered = new SubmissionPublisher<>(stagePool, bufferSize);
+        HashingStage hashing = new HashingStage(stagePool, hashingPool, manifest, algorithm,
+                FileStatCache.load(baseDir));
+        ComparisonStage comparison = new ComparisonStage(stagePool);
+        discovered.subscribe(hashing);
+        hashing.subscribe(comparison);
+        comparison.subscribe(new PoolReleasingSubscriber(subscriber, hashing, hashingPool, stagePool));
+        stagePool.execute(() -> discover(discovered));
+    }
+
+    /**
+     * Subscribe the given consumer, which is handed a change only after it consumed the previous one.
+     *
+     * @param consumer consumer of the changes
+     * @return future completed once every change has been consumed, or completed exceptionally on a failure
+     */
+    public CompletableFuture<Void> consume(Consumer<? super PackageChange> consumer) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        subscribe(new Flow.Subscriber<PackageChange>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(PackageChange change) {
+                try {
+                    consumer.accept(change);
+                } catch (RuntimeException e) {
+                    subscription.cancel();
+                    done.completeExceptionally(e);
+                    return;
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Get the number of packages hashed so far.
+     *
+     * @return the number of hashed packages
+     */
+    int getHashedPackageCount() {
+        return hashedPackages.get();
+    }
+
+    /**
+     * Wait for the pools of the pipeline to terminate, after the subscriber received its last signal or cancelled.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return false if the pools did not terminate in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService pool : pools) {
+            if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publish each package root as soon as the {@link PackageIndex} knows it, and stop once nothing downstream is
+     * subscribed.
+     */
+    private void discover(SubmissionPublisher<String> discovered) {
+        try {
+            PackageIndex.forEachPackage(baseDir, packageDir -> discovered.hasSubscribers()
+                    && submitUnlessClosed(discovered, packageDir));
+            discovered.close();
+        } catch (IOException | RuntimeException e) {
+            discovered.closeExceptionally(e);
+        }
+    }
+
+    /**
+     * Submit an item to a stage unless the stage was closed, by a failure in another thread, in which case the item is
+     * dropped instead of failing the submitting thread.
+     *
+     * @return false if the stage was closed
+     */
+    private static <T> boolean submitUnlessClosed(SubmissionPublisher<T> stage, T item) {
+        if (stage.isClosed()) {
+            return false;
+        }
+        try {
+            stage.submit(item);
+            return true;
+        } catch (IllegalStateException e) {
+            if (stage.isClosed()) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static void fail(Flow.Subscriber<?> subscriber, Throwable throwable) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(throwable);
+    }
+
+    /**
+     * Current fingerprint of a package along with its stored fingerprint.
+     */
+    private static class HashedPackage {
+        final String packageDir;
+        final String oldHash;
+        final String newHash;
+
+        HashedPackage(String packageDir, String oldHash, String newHash) {
+            this.packageDir = packageDir;
+            this.oldHash = oldHash;
+            this.newHash = newHash;
+        }
+    }
+
+    /**
+     * Hashes up to parallelism packages at once. The file stat cache is saved once every package has been hashed,
+     * or once the packages in flight have been hashed after a cancellation. It is not saved after a failure.
+     * Workers finish on threads of the hashing pool, so the calls on the upstream subscription are serialized.
+     */
+    private class HashingStage extends SubmissionPublisher<HashedPackage>
+            implements Flow.Processor<String, HashedPackage> {
+        private final ForkJoinPool hashingPool;
+        private final UnaryOperator<String> manifest;
+        private final FingerprintAlgorithm algorithm;
+        private final FileStatCache hashCache;
+        private final CompletableFuture<Void> settled = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private int pending;
+        private boolean stopped;
+        private boolean closing;
+
+        HashingStage(ExecutorService stagePool, ForkJoinPool hashingPool, UnaryOperator<String> manifest,
+                     FingerprintAlgorithm algorithm, FileStatCache hashCache) {
+            super(stagePool, bufferSize);
+            this.hashingPool = hashingPool;
+            this.manifest = manifest;
+            this.algorithm = algorithm;
+            this.hashCache = hashCache;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(parallelism);
+        }
+
+        @Override
+        public void onNext(String packageDir) {
+            synchronized (this) {
+                pending++;
+            }
+            hashingPool.execute(() -> {
+                try {
+                    if (submitUnlessClosed(this, hash(packageDir))) {
+                        requestNext();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    onError(e);
+                }
+                finishPackage();
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                subscription.cancel();
+                stopped = true;
+            }
+            closeExceptionally(throwable);
+            closeIfDone();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                stopped = true;
+            }
+            closeIfDone();
+        }
+
+        /**
+         * Stop requesting packages after the subscriber cancelled.
+         *
+         * @return future completed once the packages in flight have been hashed and the cache saved
+         */
+        CompletableFuture<Void> stop() {
+            synchronized (this) {
+                subscription.cancel();
+                stopped = true;
+            }
+            closeIfDone();
+            return settled;
+        }
+
+        private HashedPackage hash(String packageDir) throws IOException {
+            String oldHash = manifest.apply(baseDir.relativize(Paths.get(packageDir)).toString());
+            // Compare with the algorithm which produced the stored entry, as the change detector does.
+            FingerprintAlgorithm packageAlgorithm =
+                    oldHash != null ? FingerprintAlgorithms.algorithmOf(oldHash) : algorithm;
+            String newHash = FingerprintAlgorithms.format(packageAlgorithm,
+                    IncrementalHasher.generateHashString(packageDir, hashCache, packageAlgorithm));
+            hashedPackages.incrementAndGet();
+            return new HashedPackage(packageDir, oldHash, newHash);
+        }
+
+        private synchronized void requestNext() {
+            if (hasSubscribers()) {
+                subscription.request(1);
+            } else {
+                subscription.cancel();
+            }
+        }
+
+        private void finishPackage() {
+            synchronized (this) {
+                pending--;
+            }
+            closeIfDone();
+        }
+
+        private void closeIfDone() {
+            synchronized (this) {
+                if (!stopped || pending > 0 || closing) {
+                    return;
+                }
+                closing = true;
+            }
+            try {
+                if (!isClosed()) {
+                    hashCache.save();
+                    close();
+                }
+            } catch (IOException e) {
+                closeExceptionally(e);
+            } finally {
+                settled.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Publishes the hashed packages which don't match the hash properties file.
+     */
+    private static class ComparisonStage extends SubmissionPublisher<PackageChange>
+            implements Flow.Processor<HashedPackage, PackageChange> {
+        private Flow.Subscription subscription;
+
+        ComparisonStage(ExecutorService stagePool) {
+            super(stagePool, 1);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(HashedPackage hashed) {
+            if (hashed.oldHash == null || !hashed.oldHash.equalsIgnoreCase(hashed.newHash)) {
+                ValidatorMetrics.increment(ValidatorMetrics.Counter.PACKAGES_CHANGED, 1);
+                if (!submitUnlessClosed(this, new PackageChange(hashed.packageDir, hashed.oldHash, hashed.newHash,
+                        hashed.oldHash == null ? PackageChange.Reason.ADDED : PackageChange.Reason.MODIFIED))) {
+                    subscription.cancel();
+                    return;
+                }
+            }
+            if (hasSubscribers()) {
+                subscription.request(1);
+            } else {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            close();
+        }
+    }
+
+    /**
+     * Shuts the pools down once the subscriber has received its last signal, or once the hashing stage has settled
+     * after a cancellation.
+     */
+    private static class PoolReleasingSubscriber implements Flow.Subscriber<PackageChange> {
+        private final Flow.Subscriber<? super PackageChange> subscriber;
+        private final HashingStage hashing;
+        private final ExecutorService[] pools;
+
+        PoolReleasingSubscriber(Flow.Subscriber<? super PackageChange> subscriber, HashingStage hashing,
+                                ExecutorService... pools) {
+            this.subscriber = subscriber;
+            this.hashing = hashing;
+            this.pools = pools;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    hashing.stop().thenRun(PoolReleasingSubscriber.this::shutdown);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(PackageChange change) {
+            subscriber.onNext(change);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            try {
+                subscriber.onError(throwable);
+            } finally {
+                shutdown();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                subscriber.onComplete();
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            for (ExecutorService pool : pools) {
+                pool.shutdown();
+            }
+        }
+    }
+}
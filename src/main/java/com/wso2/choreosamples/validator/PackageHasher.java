@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming package hasher. Files are opened one at a time and read through a reusable direct buffer, or memory
+ * mapped when they are large, so the number of open file descriptors stays constant regardless of the package size.
+ * The fingerprint is the same as hashing the concatenation of all package files.
+ */
+public class PackageHasher {
+
+    /**
+     * Files of at least this size are memory mapped instead of being read through the buffer.
+     */
+    static final long MEMORY_MAP_THRESHOLD = 4L * 1024 * 1024;
+
+    /**
+     * Packages with at least this many files read their files ahead concurrently when hashed in a fork-join pool.
+     */
+    static final int READ_AHEAD_FILE_THRESHOLD = 32;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Only used within a single file read, so a thread never shares its buffer between two files.
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    // Read ahead buffers shared by every package hashed in a fork-join pool, allocated on first use. At most twice the
+    // parallelism of the largest pool seen are ever allocated, so direct memory doesn't grow with the packages hashed.
+    private static final ConcurrentLinkedQueue<ByteBuffer> READ_AHEAD_BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger READ_AHEAD_BUFFER_COUNT = new AtomicInteger();
+
+    /**
+     * Generate the fingerprint of the given package files.
+     *
+     * @param files     package files in the hashing order
+     * @param algorithm fingerprint algorithm
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    public static String generateHashString(List<File> files, FingerprintAlgorithm algorithm) throws IOException {
+        // Inside a fork-join pool (parallel change detection), large packages read their files ahead concurrently.
+        if (ForkJoinTask.inForkJoinPool() && files.size() >= READ_AHEAD_FILE_THRESHOLD) {
+            return generateHashStringReadingAhead(files, algorithm);
+        }
+        FingerprintHasher hasher = algorithm.newHasher();
+        for (File file : files) {
+            update(hasher, file.toPath());
+        }
+        return hasher.getHashString();
+    }
+
+    /**
+     * Generate the fingerprint of the given package files while reading them ahead on the current fork-join pool.
+     * Files which fit a buffer are read ahead into one of the shared read ahead buffers, larger files, and files for
+     * which every buffer is taken by other packages, are read by the hashing thread. The digest is still fed in the
+     * file order, hence it is identical to the sequential path.
+     */
+    private static String generateHashStringReadingAhead(List<File> files, FingerprintAlgorithm algorithm)
+            throws IOException {
+        FingerprintHasher hasher = algorithm.newHasher();
+        int window = readAheadWindow(ForkJoinTask.getPool());
+        Deque<FileReadTask> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            while (next < files.size() || !pending.isEmpty()) {
+                while (next < files.size() && pending.size() < window) {
+                    ByteBuffer buffer = borrowReadAheadBuffer(window);
+                    if (buffer == null) {
+                        break;
+                    }
+                    FileReadTask task = new FileReadTask(files.get(next++).toPath(), buffer);
+                    task.fork();
+                    pending.add(task);
+                }
+                if (pending.isEmpty()) {
+                    update(hasher, files.get(next++).toPath());
+                    continue;
+                }
+                FileReadTask task = pending.poll();
+                try {
+                    ByteBuffer content = task.join();
+                    if (content != null) {
+                        ValidatorMetrics.increment(ValidatorMetrics.Counter.BYTES_HASHED, content.remaining());
+                        hasher.update(content);
+                    } else {
+                        update(hasher, task.file);
+                    }
+                } finally {
+                    // The read is done, even if it failed, so nothing writes to the buffer anymore.
+                    READ_AHEAD_BUFFERS.add(task.buffer);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The digest is lost, so the reads still queued are not worth running. A cancelled read may already be
+            // running and still write to its buffer, hence those buffers are dropped instead of being reused.
+            for (FileReadTask task : pending) {
+                task.cancel(false);
+                READ_AHEAD_BUFFER_COUNT.decrementAndGet();
+            }
+            if (e instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e).getCause();
+            }
+            throw e;
+        }
+        return hasher.getHashString();
+    }
+
+    /**
+     * Number of files a package reads ahead of the hashing thread, which is also the number of read ahead buffers
+     * the packages hashed in the given pool share.
+     */
+    private static int readAheadWindow(ForkJoinPool pool) {
+        return Math.max(2, pool.getParallelism() * 2);
+    }
+
+    /**
+     * Number of read ahead buffers currently allocated, whether pooled or in use.
+     */
+    static int readAheadBufferCount() {
+        return READ_AHEAD_BUFFER_COUNT.get();
+    }
+
+    private static ByteBuffer borrowReadAheadBuffer(int limit) {
+        ByteBuffer buffer = READ_AHEAD_BUFFERS.poll();
+        if (buffer == null
+                && READ_AHEAD_BUFFER_COUNT.getAndUpdate(count -> count < limit ? count + 1 : count) < limit) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
+    /**
+     * Feed the content of the given file to the hasher.
+     *
+     * @param hasher hasher to update
+     * @param file   file to read
+     * @throws IOException On an error while reading the file
+     */
+    static void update(FingerprintHasher hasher, Path file) throws IOException {
+        update(hasher, null, file);
+    }
+
+    /**
+     * Feed the content of the given file to two hashers with a single read.
+     *
+     * @param hasher       hasher to update
+     * @param secondHasher another hasher to update, or null
+     * @param file         file to read
+     * @throws IOException On an error while reading the file
+     */
+    static void update(FingerprintHasher hasher, FingerprintHasher secondHasher, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ValidatorMetrics.increment(ValidatorMetrics.Counter.BYTES_HASHED, size);
+            if (size >= MEMORY_MAP_THRESHOLD) {
+                for (long position = 0; position < size; ) {
+                    long length = Math.min(Integer.MAX_VALUE, size - position);
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    update(hasher, secondHasher, mapped);
+                    position += length;
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    update(hasher, secondHasher, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+    }
+
+    private static void update(FingerprintHasher hasher, FingerprintHasher secondHasher, ByteBuffer content) {
+        if (secondHasher != null) {
+            // Hashers consume the buffer, so the first one gets a view with its own position.
+            hasher.update(content.duplicate());
+            secondHasher.update(content);
+        } else {
+            hasher.update(content);
+        }
+    }
+
+    /**
+     * Reads a whole file into the given buffer, or nothing if the file doesn't fit the buffer.
+     */
+    private static class FileReadTask extends RecursiveTask<ByteBuffer> {
+        private final Path file;
+        private final ByteBuffer buffer;
+
+        FileReadTask(Path file, ByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected ByteBuffer compute() {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > buffer.capacity()) {
+                    return null;
+                }
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    // Read until the end of the file.
+                }
+                // A file which grew past the buffer while being read is left to the hashing thread.
+                if (!buffer.hasRemaining() && channel.position() < channel.size()) {
+                    return null;
+                }
+                buffer.flip();
+                return buffer;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.PACKAGE_INDEX;
+
+/**
+ * Index of the Ballerina packages in a project, shared by all package scanners.
+ * The project is walked once, skipping hidden directories and build output, and the walk does not descend into a
+ * package once its root is found. The index remembers the modification time of every directory it walked, so it can
+ * be reused from memory or from the on disk cache as long as none of those directories changed. The project directory
+ * itself holds the hash properties files, which are replaced on every write, so it is checked by its subdirectories
+ * instead of its modification time. The caches live in their own directory for the same reason. As with the
+ * {@link FileStatCache}, a directory modified within {@link FileStatCache#RACY_WINDOW_MILLIS} of the start of the walk
+ * may have changed again within the same timestamp, so an index holding such a directory is not reused.
+ */
+public class PackageIndex {
+
+    private static final String HEADER = "# choreo-sample-validator package index v3";
+    private static final String TIME = "time";
+    private static final String DIR = "dir";
+    private static final String PACKAGE = "package";
+
+    private static final Map<Path, PackageIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final Path baseDir;
+    private final long scanTime;
+    private final Map<String, Long> dirModifiedTimes;
+    private final List<String> packageDirs;
+
+    private PackageIndex(Path baseDir, long scanTime, Map<String, Long> dirModifiedTimes, List<String> packageDirs) {
+        this.baseDir = baseDir;
+        this.scanTime = scanTime;
+        this.dirModifiedTimes = dirModifiedTimes;
+        this.packageDirs = Collections.unmodifiableList(packageDirs);
+    }
+
+    /**
+     * Get the package index of the given project, reusing the in-memory or on disk index when it is still valid.
+     *
+     * @param projectBaseDir the base project directory
+     * @return the package index
+     * @throws IOException if an error occurred while walking the project
+     */
+    public static PackageIndex load(Path projectBaseDir) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.DISCOVERY)) {
+            PackageIndex index = cached(projectBaseDir);
+            if (index == null) {
+                createCacheDir(projectBaseDir);
+                index = scan(projectBaseDir);
+                index.store();
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Hand each package of the given project to the consumer as soon as it is known. A valid in-memory or on disk
+     * index hands over its packages without walking the project. Otherwise the project is walked and each package is
+     * handed over as the walk finds it, and the index built by a complete walk is stored for the next run. The
+     * DISCOVERY phase is timed until the last package is handed over, so it includes the time the consumer holds the
+     * walk.
+     *
+     * @param projectBaseDir the base project directory
+     * @param consumer       consumer of the package paths, returning false to stop
+     * @throws IOException if an error occurred while walking the project
+     */
+    public static void forEachPackage(Path projectBaseDir, Predicate<String> consumer) throws IOException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.DISCOVERY)) {
+            PackageIndex index = cached(projectBaseDir);
+            if (index != null) {
+                for (String packageDir : index.packageDirs) {
+                    if (!consumer.test(packageDir)) {
+                        return;
+                    }
+                }
+                return;
+            }
+            createCacheDir(projectBaseDir);
+            index = walk(projectBaseDir, consumer);
+            if (index != null) {
+                index.store();
+            }
+        }
+    }
+
+    /**
+     * Walk the given project and build a fresh package index.
+     *
+     * @param projectBaseDir the base project directory
+     * @return the package index
+     * @throws IOException if an error occurred while walking the project
+     */
+    public static PackageIndex scan(Path projectBaseDir) throws IOException {
+        return walk(projectBaseDir, packageDir -> true);
+    }
+
+    /**
+     * Walk the given project, handing each package to the consumer as soon as it is found.
+     *
+     * @return the package index, or null if the consumer stopped the walk
+     */
+    private static PackageIndex walk(Path projectBaseDir, Predicate<String> consumer) throws IOException {
+        long scanTime = System.currentTimeMillis();
+        Map<String, Long> dirModifiedTimes = new LinkedHashMap<>();
+        List<String> packageDirs = new ArrayList<>();
+        boolean[] stopped = new boolean[1];
+        Files.walkFileTree(projectBaseDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(projectBaseDir) && isIgnored(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                ValidatorMetrics.increment(ValidatorMetrics.Counter.DIRECTORIES_VISITED, 1);
+                dirModifiedTimes.put(projectBaseDir.relativize(dir).toString(), dir.equals(projectBaseDir)
+                        ? rootSignature(projectBaseDir) : attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+                if (Files.isRegularFile(dir.resolve(BALLERINA_TOML))) {
+                    packageDirs.add(dir.toString());
+                    if (!consumer.test(dir.toString())) {
+                        stopped[0] = true;
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (stopped[0]) {
+            return null;
+        }
+        Collections.sort(packageDirs);
+        return new PackageIndex(projectBaseDir, scanTime, dirModifiedTimes, packageDirs);
+    }
+
+    /**
+     * Get the in-memory or on disk index of the given project, if it is still valid.
+     */
+    private static PackageIndex cached(Path projectBaseDir) {
+        Path key = projectBaseDir.toAbsolutePath().normalize();
+        PackageIndex index = INDEXES.get(key);
+        if (index != null && index.baseDir.equals(projectBaseDir) && index.isValid()) {
+            return index;
+        }
+        index = read(projectBaseDir);
+        if (index == null || !index.isValid()) {
+            return null;
+        }
+        INDEXES.put(key, index);
+        return index;
+    }
+
+    /**
+     * Check whether a directory is skipped while discovering packages.
+     *
+     * @param dir directory to check
+     * @return true for hidden directories and build output
+     */
+    static boolean isIgnored(Path dir) {
+        String name = dir.getFileName().toString();
+        return name.startsWith(".") || name.startsWith("target") || name.equals("node_modules");
+    }
+
+    /**
+     * Get absolute path of each ballerina package in the project.
+     *
+     * @return sorted list of ballerina package paths
+     */
+    public List<String> getPackageDirs() {
+        return packageDirs;
+    }
+
+    /**
+     * Get the directories walked while discovering the packages, excluding the package subtrees.
+     *
+     * @return directory paths
+     */
+    List<Path> getDirectories() {
+        List<Path> directories = new ArrayList<>();
+        for (String dir : dirModifiedTimes.keySet()) {
+            directories.add(baseDir.resolve(dir));
+        }
+        return directories;
+    }
+
+    /**
+     * Signature of the project directory, covering what the walk depends on: its subdirectories and whether it is a
+     * package itself. Files written next to the packages, such as the hash properties files, don't change it.
+     */
+    private static long rootSignature(Path projectBaseDir) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(projectBaseDir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child) && !isIgnored(child)) {
+                    entries.add(child.getFileName().toString());
+                }
+            }
+        }
+        Collections.sort(entries);
+        entries.add(Boolean.toString(Files.isRegularFile(projectBaseDir.resolve(BALLERINA_TOML))));
+        FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+        byte[] content = String.join("\0", entries).getBytes(StandardCharsets.UTF_8);
+        hasher.update(content, 0, content.length);
+        return Long.parseUnsignedLong(hasher.getHashString(), 16);
+    }
+
+    private boolean isValid() {
+        long racyTime = TimeUnit.MILLISECONDS.toNanos(scanTime - FileStatCache.RACY_WINDOW_MILLIS);
+        try {
+            for (Map.Entry<String, Long> entry : dirModifiedTimes.entrySet()) {
+                Path dir = baseDir.resolve(entry.getKey());
+                if (entry.getKey().isEmpty()) {
+                    if (rootSignature(dir) != entry.getValue()) {
+                        return false;
+                    }
+                    continue;
+                }
+                long modifiedTime = Files.getLastModifiedTime(dir).to(TimeUnit.NANOSECONDS);
+                if (modifiedTime != entry.getValue() || modifiedTime >= racyTime) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return !dirModifiedTimes.isEmpty();
+    }
+
+    private static void createCacheDir(Path projectBaseDir) {
+        try {
+            Files.createDirectories(projectBaseDir.resolve(CACHE_DIR));
+        } catch (IOException e) {
+            // Without a cache directory the index is kept in memory only.
+        }
+    }
+
+    private static PackageIndex read(Path projectBaseDir) {
+        Path indexFile = projectBaseDir.resolve(CACHE_DIR).resolve(PACKAGE_INDEX);
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        long scanTime = 0;
+        Map<String, Long> dirModifiedTimes = new LinkedHashMap<>();
+        List<String> packageDirs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(TIME + " ")) {
+                    scanTime = Long.parseLong(line.substring(TIME.length() + 1));
+                } else if (line.startsWith(DIR + " ")) {
+                    String[] parts = line.split(" ", 3);
+                    dirModifiedTimes.put(parts[2], Long.parseLong(parts[1]));
+                } else if (line.startsWith(PACKAGE + " ")) {
+                    packageDirs.add(projectBaseDir.resolve(line.substring(PACKAGE.length() + 1)).toString());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return new PackageIndex(projectBaseDir, scanTime, dirModifiedTimes, packageDirs);
+    }
+
+    private void store() {
+        INDEXES.put(baseDir.toAbsolutePath().normalize(), this);
+        write();
+    }
+
+    private void write() {
+        Path indexFile = baseDir.resolve(CACHE_DIR).resolve(PACKAGE_INDEX);
+        try {
+            Path tempFile = Files.createTempFile(indexFile.getParent(), PACKAGE_INDEX, ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                writer.write(TIME + " " + scanTime);
+                writer.newLine();
+                for (Map.Entry<String, Long> entry : dirModifiedTimes.entrySet()) {
+                    writer.write(DIR + " " + entry.getValue() + " " + entry.getKey());
+                    writer.newLine();
+                }
+                for (String packageDir : packageDirs) {
+                    writer.write(PACKAGE + " " + baseDir.relativize(Path.of(packageDir)));
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The on disk index is only an optimization, the next run walks the project again.
+        }
+    }
+}
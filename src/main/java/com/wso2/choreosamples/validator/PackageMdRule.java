@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+
+import static com.wso2.choreosamples.validator.Constants.PACKAGE_MD;
+
+/**
+ * Checks that the package documentation file exists and is not empty.
+ */
+public class PackageMdRule implements PrecheckRule {
+
+    @Override
+    public String getName() {
+        return "package-md";
+    }
+
+    @Override
+    public List<String> check(PackageSnapshot snapshot) {
+        BasicFileAttributes attributes = snapshot.getAttributes(Paths.get(PACKAGE_MD));
+        if (attributes == null) {
+            return Collections.singletonList(PACKAGE_MD + " doesn't exist");
+        } else if (attributes.size() == 0) {
+            return Collections.singletonList(PACKAGE_MD + " is empty");
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.wso2.choreosamples.validator.Constants.FINGERPRINT_ALGORITHM_KEY;
+import static com.wso2.choreosamples.validator.Constants.HASH_CACHE;
+
+/**
+ * Splits the change detection of a project across several workers.
+ * Every worker discovers the same packages and computes the same assignment, so no coordination is needed: packages
+ * are placed by rendezvous hashing of their relative path, largest first, on the highest ranked shard that stays
+ * within a bounded share of the total package size. The assignment is balanced by bytes to hash and a package only
+ * moves when the shard it ranks highest on is full. Each worker writes a partial hash properties file for its
+ * packages along with its own hash cache, and the merge step combines the partial files into the hash properties file
+ * once every shard is present and no two shards disagree, then folds the shard caches into the cache of the project.
+ * Together the shards cover every package of the project, so the merge also drops the entries of packages which no
+ * longer exist.
+ */
+public class PackageSharder {
+
+    static final String SHARD_INDEX_KEY = ".shard.index";
+    static final String SHARD_COUNT_KEY = ".shard.count";
+    private static final String SHARD_FILE_INFIX = ".shard-";
+
+    /**
+     * A shard takes at most this factor of the average shard size, unless a single package is larger.
+     */
+    private static final double LOAD_FACTOR = 1.25;
+
+    /**
+     * Assign the given packages to shards.
+     *
+     * @param projectBaseDir the base project directory
+     * @param packageDirs    paths of the Ballerina packages
+     * @param shardCount     number of shards
+     * @return packages of each shard, in the same order as the given package list
+     */
+    public static List<List<String>> assign(Path projectBaseDir, List<String> packageDirs, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        Map<String, String> keys = new TreeMap<>();
+        Map<String, Long> weights = new TreeMap<>();
+        long totalWeight = 0;
+        long maxWeight = 0;
+        for (String packageDir : packageDirs) {
+            keys.put(packageDir, projectBaseDir.relativize(Paths.get(packageDir)).toString()
+                    .replace(File.separatorChar, '/'));
+            long weight = packageSize(packageDir);
+            weights.put(packageDir, weight);
+            totalWeight += weight;
+            maxWeight = Math.max(maxWeight, weight);
+        }
+        long capacity = Math.max(maxWeight, (long) Math.ceil(LOAD_FACTOR * totalWeight / shardCount));
+
+        List<String> placementOrder = new ArrayList<>(packageDirs);
+        placementOrder.sort(Comparator.comparing((String packageDir) -> weights.get(packageDir)).reversed()
+                .thenComparing(keys::get));
+        long[] loads = new long[shardCount];
+        Map<String, Integer> shards = new TreeMap<>();
+        for (String packageDir : placementOrder) {
+            long weight = weights.get(packageDir);
+            int shard = -1;
+            for (int candidate : rankShards(keys.get(packageDir), shardCount)) {
+                if (loads[candidate] + weight <= capacity) {
+                    shard = candidate;
+                    break;
+                }
+            }
+            if (shard < 0) {
+                shard = 0;
+                for (int candidate = 1; candidate < shardCount; candidate++) {
+                    if (loads[candidate] < loads[shard]) {
+                        shard = candidate;
+                    }
+                }
+            }
+            loads[shard] += weight;
+            shards.put(packageDir, shard);
+        }
+
+        List<List<String>> assignment = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            assignment.add(new ArrayList<>());
+        }
+        for (String packageDir : packageDirs) {
+            assignment.get(shards.get(packageDir)).add(packageDir);
+        }
+        return assignment;
+    }
+
+    /**
+     * Detect the changed packages of a shard and write its partial hash properties files.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestNames  names of the hash properties files
+     * @param shardIndex     index of this shard, from 0
+     * @param shardCount     number of shards
+     * @param outputDir      directory to write the partial hash properties files to
+     * @param parallelism    maximum number of packages hashed concurrently
+     * @return changed packages of the shard against each properties file
+     * @throws IOException if an error occurred while accessing the packages or writing the partial files
+     */
+    public static ChangeDetector.ChangeReport runShard(Path projectBaseDir, List<String> manifestNames, int shardIndex,
+                                                       int shardCount, Path outputDir, int parallelism)
+            throws IOException {
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+        }
+        List<String> packageDirs = assign(projectBaseDir, PackageIndex.load(projectBaseDir).getPackageDirs(),
+                shardCount).get(shardIndex);
+        // The detection leaves every package hash of the shard in the stat cache. Shards may share the project, so
+        // each one writes its own cache next to its partial files instead of the cache of the project.
+        FileStatCache hashCache = FileStatCache.load(projectBaseDir);
+        ChangeDetector.ChangeReport report = new ChangeDetector(projectBaseDir, manifestNames, parallelism)
+                .detect(packageDirs, hashCache);
+        Files.createDirectories(outputDir);
+        for (String manifestName : manifestNames) {
+            String algorithmName = ManifestStore.lookup(projectBaseDir.resolve(manifestName),
+                    FINGERPRINT_ALGORITHM_KEY);
+            FingerprintAlgorithm algorithm = algorithmName != null ? FingerprintAlgorithms.forName(algorithmName)
+                    : FingerprintAlgorithms.MD5;
+            ManifestStore partial = ManifestStore.create(outputDir.resolve(shardFileName(manifestName,
+                    shardIndex, shardCount)));
+            partial.put(SHARD_INDEX_KEY, Integer.toString(shardIndex));
+            partial.put(SHARD_COUNT_KEY, Integer.toString(shardCount));
+            for (String packageDir : packageDirs) {
+                partial.put(projectBaseDir.relativize(Paths.get(packageDir)).toString(),
+                        FingerprintAlgorithms.format(algorithm,
+                                IncrementalHasher.generateHashString(packageDir, hashCache, algorithm)));
+            }
+            partial.save();
+        }
+        hashCache.save(outputDir.resolve(shardFileName(HASH_CACHE, shardIndex, shardCount)));
+        return report;
+    }
+
+    /**
+     * Merge the partial hash properties files of every shard into the hash properties file.
+     * Nothing is written unless the partial files of all shards are present and agree with each other. Package
+     * entries which no shard wrote are removed, metadata entries such as the fingerprint algorithm are kept.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file
+     * @param partialsDir    directory holding the partial files of the shards
+     * @return number of package entries merged
+     * @throws IOException        if an error occurred while reading or writing the properties files
+     * @throws ValidatorException if a shard is missing or two shards conflict
+     */
+    public static int mergeShards(Path projectBaseDir, String manifestName, Path partialsDir)
+            throws IOException, ValidatorException {
+        List<Path> partialFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(partialsDir,
+                manifestName + SHARD_FILE_INFIX + "*")) {
+            stream.forEach(partialFiles::add);
+        }
+        Collections.sort(partialFiles);
+
+        List<String> errors = new ArrayList<>();
+        Map<Integer, Path> shardFiles = new TreeMap<>();
+        Map<String, String> entries = new TreeMap<>();
+        Map<String, Path> entrySources = new TreeMap<>();
+        int shardCount = -1;
+        for (Path partialFile : partialFiles) {
+            Map<String, String> partial = ManifestStore.load(partialFile).getEntries();
+            int index;
+            int count;
+            try {
+                index = Integer.parseInt(partial.get(SHARD_INDEX_KEY));
+                count = Integer.parseInt(partial.get(SHARD_COUNT_KEY));
+            } catch (NumberFormatException e) {
+                errors.add(partialFile.getFileName() + ": not a shard file");
+                continue;
+            }
+            if (shardCount < 0) {
+                shardCount = count;
+            } else if (count != shardCount) {
+                errors.add(partialFile.getFileName() + ": written for " + count + " shards, expected " + shardCount);
+                continue;
+            }
+            Path previous = shardFiles.putIfAbsent(index, partialFile);
+            if (previous != null) {
+                errors.add(partialFile.getFileName() + ": shard " + index + " is also written by "
+                        + previous.getFileName());
+                continue;
+            }
+            for (Map.Entry<String, String> entry : partial.entrySet()) {
+                String key = entry.getKey();
+                if (key.equals(SHARD_INDEX_KEY) || key.equals(SHARD_COUNT_KEY)) {
+                    continue;
+                }
+                String value = entry.getValue();
+                String existing = entries.putIfAbsent(key, value);
+                if (existing != null && !existing.equalsIgnoreCase(value)) {
+                    errors.add(key + ": " + entrySources.get(key).getFileName() + " has " + existing + " but "
+                            + partialFile.getFileName() + " has " + value);
+                }
+                entrySources.putIfAbsent(key, partialFile);
+            }
+        }
+        if (shardCount < 0) {
+            errors.add("No shard files of " + manifestName + " in " + partialsDir);
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            if (!shardFiles.containsKey(i)) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            errors.add("Missing shards " + missing + " of " + shardCount);
+        }
+        if (!errors.isEmpty()) {
+            throw new ValidatorException("Failed to merge the shards of " + manifestName + System.lineSeparator()
+                    + String.join(System.lineSeparator(), errors));
+        }
+
+        ManifestStore manifest = ManifestStore.loadIfExists(projectBaseDir.resolve(manifestName));
+        entries.remove(FINGERPRINT_ALGORITHM_KEY);
+        for (String key : new ArrayList<>(manifest.getEntries().keySet())) {
+            // Metadata keys start with a dot, which no discovered package path does.
+            if (!key.startsWith(".") && !entries.containsKey(key)) {
+                manifest.remove(key);
+            }
+        }
+        entries.forEach(manifest::put);
+        manifest.save();
+        mergeHashCaches(projectBaseDir, partialsDir, shardCount, entries.keySet());
+        return entries.size();
+    }
+
+    /**
+     * Take the cached state of the merged packages from the hash caches of the shards into the cache of the
+     * project. A missing shard cache only costs a rehash of its packages on the next run.
+     */
+    private static void mergeHashCaches(Path projectBaseDir, Path partialsDir, int shardCount,
+                                        Set<String> packageKeys) throws IOException {
+        FileStatCache hashCache = FileStatCache.load(projectBaseDir);
+        List<String> cacheKeys = new ArrayList<>();
+        for (String packageKey : packageKeys) {
+            cacheKeys.add(hashCache.packageKey(projectBaseDir.resolve(packageKey)));
+        }
+        for (int i = 0; i < shardCount; i++) {
+            Path shardCache = partialsDir.resolve(shardFileName(HASH_CACHE, i, shardCount));
+            if (Files.isRegularFile(shardCache)) {
+                hashCache.merge(FileStatCache.load(projectBaseDir, shardCache), cacheKeys);
+            }
+        }
+        hashCache.save();
+    }
+
+    static String shardFileName(String manifestName, int shardIndex, int shardCount) {
+        return manifestName + SHARD_FILE_INFIX + shardIndex + "-of-" + shardCount;
+    }
+
+    /**
+     * Rank the shards for a package by their rendezvous score, highest first.
+     */
+    private static List<Integer> rankShards(String packageKey, int shardCount) {
+        long[] scores = new long[shardCount];
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            FingerprintHasher hasher = FingerprintAlgorithms.XXH64.newHasher();
+            byte[] input = (packageKey + '\0' + shard).getBytes(StandardCharsets.UTF_8);
+            hasher.update(input, 0, input.length);
+            scores[shard] = Long.parseUnsignedLong(hasher.getHashString(), 16);
+            shards.add(shard);
+        }
+        shards.sort((a, b) -> Long.compareUnsigned(scores[b], scores[a]));
+        return shards;
+    }
+
+    /**
+     * Size of the files of a package, the same files as the package hash, plus one so that empty packages still
+     * count.
+     */
+    private static long packageSize(String packageDir) {
+        List<File> files = new ArrayList<>();
+        CommonUtils.collectFiles(new File(packageDir), files);
+        long size = 1;
+        for (File file : files) {
+            size += file.length();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Files of a Ballerina package with their attributes, read once and shared by all precheck rules.
+ * Holds the same files as the package hash, so the precheck results can be cached by the package content.
+ */
+public class PackageSnapshot {
+
+    private final Path packageDir;
+    private final Map<Path, BasicFileAttributes> files;
+
+    private PackageSnapshot(Path packageDir, Map<Path, BasicFileAttributes> files) {
+        this.packageDir = packageDir;
+        this.files = Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * Read the files of the given package. A missing package results in an empty snapshot.
+     *
+     * @param packageDir path to the Ballerina package
+     * @return the snapshot
+     * @throws IOException if an error occurred while walking the package
+     */
+    public static PackageSnapshot read(String packageDir) throws IOException {
+        Path packagePath = Paths.get(packageDir);
+        Map<Path, BasicFileAttributes> files = new TreeMap<>();
+        if (Files.isDirectory(packagePath)) {
+            Files.walkFileTree(packagePath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return !dir.equals(packagePath) && CommonUtils.isExcluded(dir.getFileName().toString())
+                            ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!CommonUtils.isExcluded(file.getFileName().toString())) {
+                        files.put(packagePath.relativize(file), attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return new PackageSnapshot(packagePath, files);
+    }
+
+    public Path getPackageDir() {
+        return packageDir;
+    }
+
+    /**
+     * Get the files of the package.
+     *
+     * @return attributes of each file, keyed by the path relative to the package, in sorted order
+     */
+    public Map<Path, BasicFileAttributes> getFiles() {
+        return files;
+    }
+
+    /**
+     * Get the attributes of a file of the package.
+     *
+     * @param relativePath path of the file relative to the package
+     * @return attributes of the file, null if the package has no such file
+     */
+    public BasicFileAttributes getAttributes(Path relativePath) {
+        return files.get(relativePath);
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.SERVICE_PROPERTIES;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Long running watcher which keeps the package hashes of a project live.
+ * The package roots found by {@link PackageIndex} are watched along with the directories above them. Bursts of events
+ * are debounced and coalesced, then only the affected packages are rehashed through the {@link FileStatCache}. The
+ * set of packages changed against the hash properties file is kept as a snapshot, so asking for it is constant time.
+ * Rewriting the hash properties file, e.g. by {@link ServiceUtils#updateHashesForServices(String, List)}, resets the
+ * changes against the new hashes. A flush which keeps failing is retried with a backoff, then reported to the error
+ * handler of the watcher.
+ *
+ * <p>The watcher answers line based commands on stdin or on a loopback socket: {@code changed} lists the changed
+ * package paths followed by a {@code .} line, {@code ping} answers {@code pong} and {@code quit} ends the session.
+ */
+public class PackageWatcher implements Closeable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+    private static final long MAX_DEBOUNCE_FACTOR = 10;
+    private static final int MAX_FLUSH_RETRIES = 5;
+    private static final String END_OF_RESPONSE = ".";
+
+    private final Path baseDir;
+    private final Path manifestFile;
+    private final long debounceMillis;
+    private final Consumer<? super IOException> errorHandler;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Set<String> packageDirs = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyPackages = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "package-watcher-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread eventThread = new Thread(this::processEvents, "package-watcher-events");
+
+    private volatile boolean rediscover;
+    private volatile boolean manifestChanged;
+    private volatile List<String> changedPackages = Collections.emptyList();
+
+    // Guarded by this
+    private ScheduledFuture<?> pendingFlush;
+    private long firstPendingEventTime;
+
+    // Only accessed by the flush thread once the watcher is started
+    private final Set<String> changedState = new HashSet<>();
+    private Properties manifest;
+    private FileStatCache hashCache;
+    private int failedFlushes;
+
+    /**
+     * Create a watcher for the given project.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file, e.g. service.properties
+     * @param debounceMillis quiet period after an event before the affected packages are rehashed
+     * @throws IOException if the watch service couldn't be created
+     */
+    public PackageWatcher(Path projectBaseDir, String manifestName, long debounceMillis) throws IOException {
+        this(projectBaseDir, manifestName, debounceMillis, error -> System.err.println(error.getMessage()));
+    }
+
+    /**
+     * Create a watcher for the given project, which reports the flushes it gave up on to the given handler.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file, e.g. service.properties
+     * @param debounceMillis quiet period after an event before the affected packages are rehashed
+     * @param errorHandler   handler of the errors of the flushes given up on, called on the flush thread
+     * @throws IOException if the watch service couldn't be created
+     */
+    public PackageWatcher(Path projectBaseDir, String manifestName, long debounceMillis,
+                          Consumer<? super IOException> errorHandler) throws IOException {
+        this.baseDir = projectBaseDir;
+        this.manifestFile = projectBaseDir.resolve(manifestName);
+        this.debounceMillis = debounceMillis;
+        this.errorHandler = errorHandler;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        eventThread.setDaemon(true);
+    }
+
+    /**
+     * Discover and hash the packages, then start watching them.
+     *
+     * @throws IOException if an error occurred while accessing the project
+     */
+    public void start() throws IOException {
+        manifest = loadManifest();
+        hashCache = FileStatCache.load(baseDir);
+        discoverPackages();
+        flush();
+        eventThread.start();
+    }
+
+    /**
+     * Get the packages changed against the hash properties file, as of the last processed events.
+     *
+     * @return sorted list of ballerina package paths
+     */
+    public List<String> getChangedPackages() {
+        return changedPackages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Answer the watcher commands read from the given input until it ends or a {@code quit} command is read.
+     *
+     * @param input  command input
+     * @param output response output
+     * @throws IOException if an error occurred while reading the commands
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+        String command;
+        while ((command = reader.readLine()) != null) {
+            switch (command.trim()) {
+                case "changed":
+                    for (String packageDir : changedPackages) {
+                        writer.println(packageDir);
+                    }
+                    writer.println(END_OF_RESPONSE);
+                    break;
+                case "ping":
+                    writer.println("pong");
+                    break;
+                case "quit":
+                    return;
+                case "":
+                    break;
+                default:
+                    writer.println("error unknown command: " + command.trim());
+            }
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        onOverflow(dir);
+                    } else {
+                        onEvent(dir, dir.resolve((Path) event.context()), event.kind());
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+            scheduleFlush();
+        }
+    }
+
+    private void onEvent(Path dir, Path child, WatchEvent.Kind<?> kind) {
+        String fileName = child.getFileName().toString();
+        if (child.equals(manifestFile) || child.equals(ManifestStore.journalFile(manifestFile))) {
+            manifestChanged = true;
+            return;
+        }
+        String packageDir = owningPackage(dir);
+        if (packageDir != null) {
+            if (!CommonUtils.isExcluded(fileName)) {
+                dirtyPackages.add(packageDir);
+                if (kind == ENTRY_CREATE && Files.isDirectory(child)) {
+                    registerTree(child);
+                }
+            }
+        } else if (!PackageIndex.isIgnored(child) && (Files.isDirectory(child) || kind == ENTRY_DELETE
+                || fileName.equals(BALLERINA_TOML))) {
+            rediscover = true;
+        }
+    }
+
+    /**
+     * Events of the given directory were lost, so rescan only the packages the directory belongs to or contains.
+     */
+    private void onOverflow(Path dir) {
+        String packageDir = owningPackage(dir);
+        if (packageDir != null) {
+            dirtyPackages.add(packageDir);
+            registerTree(Paths.get(packageDir));
+        } else {
+            rediscover = true;
+            for (String candidate : packageDirs) {
+                if (Paths.get(candidate).startsWith(dir)) {
+                    dirtyPackages.add(candidate);
+                    registerTree(Paths.get(candidate));
+                }
+            }
+        }
+    }
+
+    private synchronized void scheduleFlush() {
+        long now = System.currentTimeMillis();
+        if (pendingFlush != null && !pendingFlush.isDone()) {
+            // Keep postponing while events keep coming, but not beyond the maximum debounce period.
+            if (now - firstPendingEventTime >= debounceMillis * MAX_DEBOUNCE_FACTOR) {
+                return;
+            }
+            pendingFlush.cancel(false);
+        } else {
+            firstPendingEventTime = now;
+        }
+        pendingFlush = scheduler.schedule(this::flushQuietly, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            failedFlushes = 0;
+        } catch (IOException e) {
+            if (++failedFlushes > MAX_FLUSH_RETRIES) {
+                // The affected packages are still dirty, so the flush of the next event tries them again.
+                failedFlushes = 0;
+                errorHandler.accept(new IOException("Unable to rehash the changed packages of " + baseDir
+                        + " after " + MAX_FLUSH_RETRIES + " retries: " + e.getMessage(), e));
+                return;
+            }
+            // Back off, so a persistent error doesn't keep the flush thread spinning.
+            scheduleRetry(debounceMillis << failedFlushes);
+        }
+    }
+
+    private synchronized void scheduleRetry(long delayMillis) {
+        // A flush scheduled by a new event, which hasn't started yet, already retries the dirty packages.
+        if (pendingFlush != null && !pendingFlush.isDone() && pendingFlush.getDelay(TimeUnit.MILLISECONDS) > 0) {
+            return;
+        }
+        pendingFlush = scheduler.schedule(this::flushQuietly, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() throws IOException {
+        if (rediscover) {
+            rediscover = false;
+            discoverPackages();
+        }
+        if (manifestChanged) {
+            manifestChanged = false;
+            manifest = loadManifest();
+            dirtyPackages.addAll(packageDirs);
+        }
+        List<String> packagesToHash = new ArrayList<>(dirtyPackages);
+        dirtyPackages.removeAll(packagesToHash);
+        try {
+            for (int i = 0; i < packagesToHash.size(); i++) {
+                String packageDir = packagesToHash.get(i);
+                if (!Files.isRegularFile(Paths.get(packageDir, BALLERINA_TOML))) {
+                    packageDirs.remove(packageDir);
+                    changedState.remove(packageDir);
+                } else if (isPackageChanged(packageDir)) {
+                    changedState.add(packageDir);
+                } else {
+                    changedState.remove(packageDir);
+                }
+            }
+        } catch (IOException e) {
+            dirtyPackages.addAll(packagesToHash);
+            throw e;
+        }
+        List<String> snapshot = new ArrayList<>(changedState);
+        Collections.sort(snapshot);
+        changedPackages = Collections.unmodifiableList(snapshot);
+        hashCache.save();
+    }
+
+    private boolean isPackageChanged(String packageDir) throws IOException {
+        String oldHash = manifest.getProperty(baseDir.relativize(Paths.get(packageDir)).toString());
+        if (oldHash != null) {
+            FingerprintAlgorithm algorithm = FingerprintAlgorithms.algorithmOf(oldHash);
+            String currentHash = FingerprintAlgorithms.format(algorithm,
+                    IncrementalHasher.generateHashString(packageDir, hashCache, algorithm));
+            return !oldHash.equalsIgnoreCase(currentHash);
+        }
+        return true;
+    }
+
+    private void discoverPackages() throws IOException {
+        PackageIndex index = PackageIndex.load(baseDir);
+        for (Path dir : index.getDirectories()) {
+            registerDir(dir);
+        }
+        Set<String> discovered = new HashSet<>(index.getPackageDirs());
+        for (String packageDir : discovered) {
+            if (packageDirs.add(packageDir)) {
+                registerTree(Paths.get(packageDir));
+                dirtyPackages.add(packageDir);
+            }
+        }
+        for (String packageDir : packageDirs) {
+            if (!discovered.contains(packageDir)) {
+                packageDirs.remove(packageDir);
+                changedState.remove(packageDir);
+            }
+        }
+    }
+
+    private String owningPackage(Path dir) {
+        for (Path current = dir; current != null && current.startsWith(baseDir); current = current.getParent()) {
+            if (packageDirs.contains(current.toString())) {
+                return current.toString();
+            }
+        }
+        return null;
+    }
+
+    private void registerTree(Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && CommonUtils.isExcluded(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    registerDir(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // The directory vanished, its package is rehashed or dropped on the next flush.
+        }
+    }
+
+    private void registerDir(Path dir) {
+        try {
+            watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        } catch (IOException | ClosedWatchServiceException e) {
+            // The directory vanished or the watcher is closing.
+        }
+    }
+
+    private Properties loadManifest() throws IOException {
+        return ManifestStore.loadIfExists(manifestFile).toProperties();
+    }
+
+    /**
+     * Run the watcher until its stdin session ends. Arguments are the base project directory, optionally followed by
+     * the name of the hash properties file (service.properties by default) and a loopback port to serve on instead of
+     * stdin.
+     *
+     * @param args command line arguments
+     * @return process exit code
+     * @throws IOException if an error occurred while watching the project
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    public static int run(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Missing project base directory");
+        }
+        String manifestName = args.length > 1 ? args[1] : SERVICE_PROPERTIES;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+        return run(Paths.get(args[0]), manifestName, Duration.ofMillis(DEFAULT_DEBOUNCE_MILLIS), port);
+    }
+
+    /**
+     * Run the watcher until its session ends, on stdin or on every connection to a loopback port.
+     *
+     * @param projectBaseDir the base project directory
+     * @param manifestName   name of the hash properties file, e.g. service.properties
+     * @param debounce       quiet period after an event before the affected packages are rehashed
+     * @param port           loopback port to serve on, or a negative port to serve on stdin
+     * @return process exit code
+     * @throws IOException if an error occurred while watching the project
+     */
+    public static int run(Path projectBaseDir, String manifestName, Duration debounce, int port) throws IOException {
+        try (PackageWatcher watcher = new PackageWatcher(projectBaseDir, manifestName, debounce.toMillis())) {
+            watcher.start();
+            if (port >= 0) {
+                try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        Thread client = new Thread(() -> {
+                            try (socket) {
+                                watcher.serve(socket.getInputStream(), socket.getOutputStream());
+                            } catch (IOException e) {
+                                // The client went away.
+                            }
+                        }, "package-watcher-client");
+                        client.setDaemon(true);
+                        client.start();
+                    }
+                }
+            }
+            watcher.serve(System.in, System.out);
+        }
+        return 0;
+    }
+}
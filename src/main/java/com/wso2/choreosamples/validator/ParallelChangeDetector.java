@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the per package change detection on a bounded fork-join pool.
+ * Packages are checked concurrently and, within the pool, {@link PackageHasher} reads the files of large packages
+ * ahead concurrently, while the digest itself is still fed in the sequential file order. Hence the results are
+ * identical to the sequential path.
+ */
+public class ParallelChangeDetector {
+
+    /**
+     * Default parallelism level, one worker per available core.
+     */
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Change check of a single Ballerina package.
+     */
+    @FunctionalInterface
+    public interface PackageCheck {
+        boolean isChanged(String packageDir) throws IOException;
+    }
+
+    /**
+     * Filter the changed packages out of the given package list.
+     *
+     * @param packageDirs  paths of the Ballerina packages to check
+     * @param packageCheck change check to run against each package
+     * @param parallelism  maximum number of packages checked concurrently, 1 runs the checks sequentially
+     * @return changed package paths, in the same order as the given package list
+     * @throws IOException if an error occurred while accessing files inside a package
+     */
+    public static List<String> filterChangedPackages(List<String> packageDirs, PackageCheck packageCheck,
+                                                     int parallelism) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism level: " + parallelism);
+        }
+        boolean[] changed = new boolean[packageDirs.size()];
+        if (parallelism == 1 || packageDirs.size() < 2) {
+            for (int i = 0; i < changed.length; i++) {
+                changed[i] = packageCheck.isChanged(packageDirs.get(i));
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new PackageCheckTask(packageDirs, packageCheck, changed, 0, changed.length));
+            } catch (UncheckedIOException e) {
+                // Drop the checks still queued instead of letting them run after the failure.
+                pool.shutdownNow();
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        List<String> changedPackageDirs = new ArrayList<>();
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i]) {
+                changedPackageDirs.add(packageDirs.get(i));
+            }
+        }
+        return changedPackageDirs;
+    }
+
+    /**
+     * Splits the package list in halves until a single package is left, then runs the change check on it.
+     */
+    private static class PackageCheckTask extends RecursiveAction {
+        private final List<String> packageDirs;
+        private final PackageCheck packageCheck;
+        private final boolean[] changed;
+        private final int from;
+        private final int to;
+
+        PackageCheckTask(List<String> packageDirs, PackageCheck packageCheck, boolean[] changed, int from, int to) {
+            this.packageDirs = packageDirs;
+            this.packageCheck = packageCheck;
+            this.changed = changed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    changed[from] = packageCheck.isChanged(packageDirs.get(from));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PackageCheckTask(packageDirs, packageCheck, changed, from, middle),
+                        new PackageCheckTask(packageDirs, packageCheck, changed, middle, to));
+            }
+        }
+    }
+}
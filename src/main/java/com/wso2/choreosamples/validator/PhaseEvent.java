@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for every timed phase of the validator when metrics are enabled. The event is gated on the
+ * <code>choreo.validator.metrics</code> system property like the rest of the metrics, so a flight recording of a run
+ * without the property holds no validator phases.
+ */
+@Name("com.wso2.choreosamples.validator.Phase")
+@Label("Validator Phase")
+@Category("Choreo Sample Validator")
+@Description("A timed phase of the sample validator, e.g. package discovery or hashing")
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+}
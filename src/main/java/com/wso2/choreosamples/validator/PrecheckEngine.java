@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.PRECHECK_CACHE;
+
+/**
+ * Runs the precheck rules against the Ballerina packages.
+ * Packages are checked in parallel, each package is walked once and its file attributes are shared by all rules.
+ * Every violation of every package is collected instead of stopping at the first one. Results are cached across runs
+ * by the Merkle root of the package, hence the rules are not evaluated again for unchanged packages. The cache only
+ * keeps the results of the packages of the last run.
+ */
+public class PrecheckEngine {
+
+    private static final String HEADER = "# choreo-sample-validator precheck cache v1";
+    private static final String RULES = "rules";
+    private static final String PACKAGE = "package";
+    private static final String VIOLATION = "violation";
+
+    private static final List<PrecheckRule> DEFAULT_RULES;
+
+    static {
+        List<PrecheckRule> rules = new ArrayList<>();
+        rules.add(new PackageMdRule());
+        rules.add(new ModuleMdRule());
+        for (PrecheckRule rule : ServiceLoader.load(PrecheckRule.class)) {
+            rules.add(rule);
+        }
+        DEFAULT_RULES = Collections.unmodifiableList(rules);
+    }
+
+    private final List<PrecheckRule> rules;
+    private final String ruleNames;
+
+    /**
+     * Create a precheck engine running the given rules.
+     *
+     * @param rules precheck rules, in the order their violations are reported
+     */
+    public PrecheckEngine(List<PrecheckRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.ruleNames = this.rules.stream().map(PrecheckRule::getName).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Create a precheck engine running the built-in rules and the rules registered through
+     * {@link java.util.ServiceLoader}.
+     *
+     * @return the engine
+     */
+    public static PrecheckEngine withDefaultRules() {
+        return new PrecheckEngine(DEFAULT_RULES);
+    }
+
+    /**
+     * Check a single package, without using the result cache.
+     *
+     * @param packageDir path to the Ballerina package
+     * @return violations of the package, empty if the package passed
+     * @throws IOException if an error occurred while reading the package
+     */
+    public List<String> check(String packageDir) throws IOException {
+        return withPackage(packageDir, evaluate(packageDir));
+    }
+
+    /**
+     * Check the given packages in parallel, reusing the cached results of unchanged packages.
+     *
+     * @param projectBaseDir the base project directory
+     * @param packageDirs    paths of the Ballerina packages to check
+     * @param parallelism    maximum number of packages checked concurrently
+     * @return violations of every package
+     * @throws IOException if an error occurred while reading a package
+     */
+    public PrecheckReport run(String projectBaseDir, List<String> packageDirs, int parallelism) throws IOException {
+        Path baseDir = Paths.get(projectBaseDir);
+        FileStatCache hashCache = FileStatCache.load(baseDir);
+        Map<String, List<String>> cachedResults = loadCache(baseDir);
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+
+        List<List<String>> packageViolations;
+        if (packageDirs.isEmpty()) {
+            packageViolations = Collections.emptyList();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                packageViolations = pool.submit(() -> packageDirs.parallelStream()
+                        .map(packageDir -> checkPackage(packageDir, hashCache, cachedResults, results))
+                        .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while running the prechecks", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw new IOException("Failed to run the prechecks", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        hashCache.save();
+        // Only the results of the packages checked in this run are kept, so the cache doesn't grow with every edit.
+        saveCache(baseDir, results);
+
+        Map<String, List<String>> violations = new LinkedHashMap<>();
+        for (int i = 0; i < packageDirs.size(); i++) {
+            if (!packageViolations.get(i).isEmpty()) {
+                violations.put(packageDirs.get(i), packageViolations.get(i));
+            }
+        }
+        return new PrecheckReport(violations);
+    }
+
+    private List<String> checkPackage(String packageDir, FileStatCache hashCache,
+                                      Map<String, List<String>> cachedResults, Map<String, List<String>> results) {
+        try {
+            String merkleRoot = IncrementalHasher.hashPackage(packageDir, hashCache, FileStatCache.FILE_ALGORITHM)
+                    .getMerkleRoot();
+            List<String> violations = cachedResults.get(merkleRoot);
+            if (violations == null) {
+                violations = evaluate(packageDir);
+            }
+            results.put(merkleRoot, violations);
+            return withPackage(packageDir, violations);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<String> evaluate(String packageDir) throws IOException {
+        PackageSnapshot snapshot = PackageSnapshot.read(packageDir);
+        List<String> violations = new ArrayList<>();
+        for (PrecheckRule rule : rules) {
+            for (String violation : rule.check(snapshot)) {
+                violations.add(violation.replace('\n', ' ').replace('\r', ' '));
+            }
+        }
+        return Collections.unmodifiableList(violations);
+    }
+
+    private static List<String> withPackage(String packageDir, List<String> violations) {
+        List<String> messages = new ArrayList<>(violations.size());
+        for (String violation : violations) {
+            messages.add(violation + " in package " + packageDir);
+        }
+        return messages;
+    }
+
+    private Map<String, List<String>> loadCache(Path baseDir) {
+        Path cacheFile = baseDir.resolve(CACHE_DIR).resolve(PRECHECK_CACHE);
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+        if (!Files.isRegularFile(cacheFile)) {
+            return results;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            // Results of a different rule set are stale.
+            if (!HEADER.equals(reader.readLine()) || !(RULES + " " + ruleNames).equals(reader.readLine())) {
+                return results;
+            }
+            List<String> violations = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PACKAGE + " ")) {
+                    violations = new ArrayList<>();
+                    results.put(line.substring(PACKAGE.length() + 1), violations);
+                } else if (line.startsWith(VIOLATION + " ") && violations != null) {
+                    violations.add(line.substring(VIOLATION.length() + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A corrupted cache only costs evaluating the rules again.
+            return new ConcurrentHashMap<>();
+        }
+        return results;
+    }
+
+    private void saveCache(Path baseDir, Map<String, List<String>> results) throws IOException {
+        Path cacheFile = baseDir.resolve(CACHE_DIR).resolve(PRECHECK_CACHE);
+        Files.createDirectories(cacheFile.getParent());
+        Path tempFile = Files.createTempFile(cacheFile.getParent(), PRECHECK_CACHE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(RULES + " " + ruleNames);
+            writer.newLine();
+            for (Map.Entry<String, List<String>> result : new TreeMap<>(results).entrySet()) {
+                writer.write(PACKAGE + " " + result.getKey());
+                writer.newLine();
+                for (String violation : result.getValue()) {
+                    writer.write(VIOLATION + " " + violation);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Violations found by a precheck run.
+     */
+    public static class PrecheckReport {
+        private final Map<String, List<String>> violations;
+
+        PrecheckReport(Map<String, List<String>> violations) {
+            this.violations = Collections.unmodifiableMap(violations);
+        }
+
+        /**
+         * Get the violations of each failed package.
+         *
+         * @return violations keyed by package path, in the order the packages were given
+         */
+        public Map<String, List<String>> getViolations() {
+            return violations;
+        }
+
+        public boolean isSuccessful() {
+            return violations.isEmpty();
+        }
+
+        /**
+         * Fail with every violation of the run.
+         *
+         * @throws BuildPrecheckException if any package failed the prechecks
+         */
+        public void throwIfFailed() throws BuildPrecheckException {
+            if (!isSuccessful()) {
+                List<String> messages = new ArrayList<>();
+                violations.values().forEach(messages::addAll);
+                throw new BuildPrecheckException(String.join(System.lineSeparator(), messages));
+            }
+        }
+    }
+}
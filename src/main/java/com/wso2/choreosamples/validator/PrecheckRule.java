@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Precheck run against every Ballerina package before it is built.
+ * Additional rules can be registered through {@link java.util.ServiceLoader}. A rule must only depend on the files of
+ * the package, since its results are cached by the package content.
+ */
+public interface PrecheckRule {
+
+    /**
+     * Name of the rule. Changing the set of rule names invalidates the cached results.
+     *
+     * @return rule name, without whitespace
+     */
+    String getName();
+
+    /**
+     * Check a package.
+     *
+     * @param snapshot files of the package along with their attributes
+     * @return violations of the rule, empty if the package passed
+     * @throws IOException if an error occurred while reading a file of the package
+     */
+    List<String> check(PackageSnapshot snapshot) throws IOException;
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Semantic package fingerprint. Structured files, i.e. the file types of {@link FileType}, contribute the digest of
+ * their canonical form, so reformatting, reordering keys or editing comments doesn't change the fingerprint. Other
+ * files, and structured files which can't be parsed, contribute their raw bytes like the base algorithm. The
+ * algorithm is named after its base algorithm, e.g. <code>XXH64-SEMANTIC</code>, so the mode is recorded with every
+ * fingerprint in the hash properties files.
+ *
+ * <p>Canonical digests are memoized by the raw content digest of the file, and persisted with the
+ * {@link FileStatCache}, so each distinct file is parsed once. Saving the cache drops the memoized digests of files
+ * it no longer knows, so the memo is bounded by the files of the cached packages.
+ */
+public class SemanticFingerprint implements FingerprintAlgorithm {
+
+    static final String SUFFIX = "-SEMANTIC";
+
+    /**
+     * Larger structured files are hashed as raw bytes rather than parsed.
+     */
+    private static final long MAX_CANONICAL_FILE_SIZE = PackageHasher.MEMORY_MAP_THRESHOLD;
+
+    private static final String UNPARSEABLE = "-";
+    private static final byte[] CANONICAL_MARKER = "\0canonical\0".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Canonical digests keyed by the raw content digest and the file type, e.g. <code>3f2a....yaml</code>.
+     */
+    private static final Map<String, String> CANONICAL_DIGESTS = new ConcurrentHashMap<>();
+
+    private final FingerprintAlgorithm baseAlgorithm;
+
+    public SemanticFingerprint(FingerprintAlgorithm baseAlgorithm) {
+        this.baseAlgorithm = baseAlgorithm;
+    }
+
+    @Override
+    public String getName() {
+        return baseAlgorithm.getName() + SUFFIX;
+    }
+
+    /**
+     * Create a hasher of the base algorithm. Package files are fed to it through
+     * {@link #update(FingerprintHasher, Path, String)}, which feeds structured files in their canonical form.
+     *
+     * @return the hasher
+     */
+    @Override
+    public FingerprintHasher newHasher() {
+        return baseAlgorithm.newHasher();
+    }
+
+    /**
+     * Generate the semantic fingerprint of the given package files.
+     *
+     * @param files package files in the hashing order
+     * @return Hashed string
+     * @throws IOException On an error while reading files
+     */
+    @Override
+    public String hash(List<File> files) throws IOException {
+        FingerprintHasher hasher = newHasher();
+        for (File file : files) {
+            update(hasher, file.toPath(), null);
+        }
+        return hasher.getHashString();
+    }
+
+    /**
+     * Feed a single package file to a hasher created by {@link #newHasher()}. A structured file whose raw digest is
+     * given and whose canonical digest is already known isn't read at all.
+     *
+     * @param hasher     hasher of this algorithm
+     * @param file       package file
+     * @param fileDigest the raw digest computed with {@link FileStatCache#FILE_ALGORITHM}, or null if it isn't known
+     * @return the raw digest of the file computed with {@link FileStatCache#FILE_ALGORITHM}
+     * @throws IOException On an error while reading the file
+     */
+    @Override
+    public String update(FingerprintHasher hasher, Path file, String fileDigest) throws IOException {
+        FileType fileType = fileType(file.getFileName().toString());
+        if (fileType == null || Files.size(file) > MAX_CANONICAL_FILE_SIZE) {
+            return FingerprintAlgorithm.super.update(hasher, file, fileDigest);
+        }
+        String canonicalDigest = fileDigest != null ? CANONICAL_DIGESTS.get(canonicalKey(fileDigest, fileType)) : null;
+        if (canonicalDigest == null || canonicalDigest.equals(UNPARSEABLE)) {
+            byte[] content = Files.readAllBytes(file);
+            ValidatorMetrics.increment(ValidatorMetrics.Counter.BYTES_HASHED, content.length);
+            if (fileDigest == null) {
+                FingerprintHasher rawHasher = FileStatCache.FILE_ALGORITHM.newHasher();
+                rawHasher.update(content, 0, content.length);
+                fileDigest = rawHasher.getHashString();
+            }
+            canonicalDigest = canonicalDigest(fileType, fileDigest, content);
+            if (canonicalDigest.equals(UNPARSEABLE)) {
+                hasher.update(content, 0, content.length);
+                return fileDigest;
+            }
+        }
+        byte[] digest = canonicalDigest.getBytes(StandardCharsets.UTF_8);
+        hasher.update(CANONICAL_MARKER, 0, CANONICAL_MARKER.length);
+        hasher.update(digest, 0, digest.length);
+        return fileDigest;
+    }
+
+    private static String canonicalDigest(FileType fileType, String fileDigest, byte[] content) {
+        return CANONICAL_DIGESTS.computeIfAbsent(canonicalKey(fileDigest, fileType), k -> {
+            byte[] canonical = Canonicalizer.canonicalize(fileType, content);
+            if (canonical == null) {
+                return UNPARSEABLE;
+            }
+            FingerprintHasher canonicalHasher = FileStatCache.FILE_ALGORITHM.newHasher();
+            canonicalHasher.update(canonical, 0, canonical.length);
+            return canonicalHasher.getHashString();
+        });
+    }
+
+    private static String canonicalKey(String fileDigest, FileType fileType) {
+        return fileDigest + "." + fileType.getValue();
+    }
+
+    private static FileType fileType(String fileName) {
+        int extensionStart = fileName.lastIndexOf('.');
+        if (extensionStart < 0) {
+            return null;
+        }
+        String extension = fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT);
+        for (FileType fileType : FileType.values()) {
+            if (fileType.getValue().equals(extension)) {
+                return fileType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the memoized canonical digests.
+     *
+     * @return canonical digests keyed by raw content digest and file type
+     */
+    static Map<String, String> getCanonicalDigests() {
+        return Collections.unmodifiableMap(CANONICAL_DIGESTS);
+    }
+
+    /**
+     * Drop the memoized canonical digests of files other than the given ones.
+     *
+     * @param fileDigests raw content digests of the files to keep
+     */
+    static void retainCanonicalDigests(Set<String> fileDigests) {
+        CANONICAL_DIGESTS.keySet().removeIf(key -> !fileDigests.contains(key.substring(0, key.indexOf('.'))));
+    }
+
+    /**
+     * Remember a canonical digest computed by an earlier run.
+     *
+     * @param key             raw content digest and file type
+     * @param canonicalDigest digest of the canonical form
+     */
+    static void rememberCanonicalDigest(String key, String canonicalDigest) {
+        CANONICAL_DIGESTS.putIfAbsent(key, canonicalDigest);
+    }
+}
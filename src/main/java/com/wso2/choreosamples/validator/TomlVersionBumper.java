@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.PACKAGE;
+import static com.wso2.choreosamples.validator.Constants.VERSION;
+
+/**
+ * Bumps the patch version of Ballerina packages with a minimal in place edit of the {@code [package]} version line.
+ * The TOML file is scanned line by line instead of being parsed into an object model, so comments, ordering and
+ * formatting of the rest of the file are preserved. The version is found as a bare or quoted {@code version} key of
+ * the {@code [package]} table, or as a dotted {@code package.version} key before the first table. Inline tables such
+ * as {@code package = { version = "1.0.0" }} are not recognized. Files are synced and replaced atomically.
+ */
+public class TomlVersionBumper {
+
+    private static final Pattern TABLE_HEADER = Pattern.compile("^\\s*\\[\\s*([^\\[\\]]*?)\\s*]\\s*(#.*)?$");
+    private static final Pattern ARRAY_TABLE_HEADER = Pattern.compile("^\\s*\\[\\[.*]]\\s*(#.*)?$");
+    private static final Pattern PACKAGE_KEY = Pattern.compile(key(PACKAGE));
+    private static final Pattern VERSION_LINE = versionLine("^\\s*" + key(VERSION));
+    private static final Pattern DOTTED_VERSION_LINE =
+            versionLine("^\\s*" + key(PACKAGE) + "\\s*\\.\\s*" + key(VERSION));
+
+    /**
+     * Increment the patch version of the given packages.
+     * All packages are checked before any file is written, so an invalid version in any package leaves every file
+     * untouched. Writes are atomic per package only, an error while writing can leave some packages bumped. A package
+     * listed more than once is bumped once.
+     *
+     * @param packageDirs paths of the Ballerina packages
+     * @param dryRun      report the version changes without writing them
+     * @param parallelism maximum number of packages processed concurrently
+     * @return version changes, in the same order as the given packages
+     * @throws IOException        if an error occurred while reading/writing the toml files
+     * @throws ValidatorException if the version of any of the Ballerina.toml files is invalid
+     */
+    public static List<VersionBump> bumpVersions(List<String> packageDirs, boolean dryRun, int parallelism)
+            throws IOException, ValidatorException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.TOML_BUMP)) {
+            return bump(packageDirs, dryRun, parallelism);
+        }
+    }
+
+    private static List<VersionBump> bump(List<String> packageDirs, boolean dryRun, int parallelism)
+            throws IOException, ValidatorException {
+        // Keyed by the resolved path, so two spellings of the same package don't write the same file concurrently.
+        Map<Path, String> uniqueDirs = new LinkedHashMap<>();
+        for (String packageDir : packageDirs) {
+            uniqueDirs.putIfAbsent(resolve(packageDir), packageDir);
+        }
+        List<VersionBump> bumps = runInParallel(new ArrayList<>(uniqueDirs.values()), parallelism, packageDir -> {
+            try {
+                return plan(packageDir);
+            } catch (ValidatorException e) {
+                return new VersionBump(packageDir, null, null, null, e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        List<String> errors = new ArrayList<>();
+        for (VersionBump bump : bumps) {
+            if (bump.error != null) {
+                errors.add(bump.packageDir + ": " + bump.error);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new ValidatorException("Failed to bump package versions" + System.lineSeparator()
+                    + String.join(System.lineSeparator(), errors));
+        }
+        if (!dryRun) {
+            runInParallel(bumps, parallelism, bump -> {
+                try {
+                    write(bump);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return bump;
+            });
+        }
+        Map<Path, VersionBump> bumpsByDir = new LinkedHashMap<>();
+        for (VersionBump bump : bumps) {
+            bumpsByDir.put(resolve(bump.packageDir), bump);
+        }
+        return packageDirs.stream().map(packageDir -> bumpsByDir.get(resolve(packageDir)))
+                .collect(Collectors.toList());
+    }
+
+    private static Path resolve(String packageDir) {
+        return Paths.get(packageDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Increment the patch version of the given package.
+     *
+     * @param packageDir Ballerina package path
+     * @return the version change
+     * @throws IOException        if an error occurred while reading/writing the toml file
+     * @throws ValidatorException if version of the Ballerina.toml file is invalid
+     */
+    public static VersionBump bumpVersion(String packageDir) throws IOException, ValidatorException {
+        try (ValidatorMetrics.Timer timer = ValidatorMetrics.time(ValidatorMetrics.Phase.TOML_BUMP)) {
+            VersionBump bump = plan(packageDir);
+            write(bump);
+            return bump;
+        }
+    }
+
+    private static VersionBump plan(String packageDir) throws IOException, ValidatorException {
+        Path tomlFile = Paths.get(packageDir, BALLERINA_TOML);
+        String content = Files.readString(tomlFile, StandardCharsets.UTF_8);
+        boolean inRootTable = true;
+        boolean inPackageTable = false;
+        int lineStart = 0;
+        while (lineStart < content.length()) {
+            int lineEnd = content.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = content.length();
+            }
+            String line = content.substring(lineStart, lineEnd);
+            Matcher header = TABLE_HEADER.matcher(line);
+            if (ARRAY_TABLE_HEADER.matcher(line).matches()) {
+                inRootTable = false;
+                inPackageTable = false;
+            } else if (header.matches()) {
+                inRootTable = false;
+                inPackageTable = PACKAGE_KEY.matcher(header.group(1)).matches();
+            } else if (inPackageTable || inRootTable) {
+                Matcher version = (inPackageTable ? VERSION_LINE : DOTTED_VERSION_LINE).matcher(line);
+                if (version.find()) {
+                    String oldVersion = version.group(2);
+                    String newVersion = incrementPatchVersion(oldVersion);
+                    String newContent = content.substring(0, lineStart + version.start(2)) + newVersion
+                            + content.substring(lineStart + version.end(2));
+                    return new VersionBump(packageDir, oldVersion, newVersion, newContent, null);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        throw new ValidatorException("Version not found in the [" + PACKAGE + "] table of " + tomlFile);
+    }
+
+    /**
+     * Pattern of a TOML key, bare or quoted.
+     */
+    private static String key(String name) {
+        return "(?:" + name + "|\"" + name + "\"|'" + name + "')";
+    }
+
+    private static Pattern versionLine(String keyPattern) {
+        return Pattern.compile(keyPattern + "\\s*=\\s*([\"'])([^\"'\\r\\n]*)\\1");
+    }
+
+    private static String incrementPatchVersion(String version) throws ValidatorException {
+        String[] semVerPartitions = version.split("\\.");
+        if (semVerPartitions.length != 3) {
+            throw new ValidatorException("Invalid version pattern");
+        }
+        try {
+            int patchVersion = Integer.parseInt(semVerPartitions[2]);
+            return String.format("%s.%s.%s", semVerPartitions[0], semVerPartitions[1], (patchVersion + 1));
+        } catch (NumberFormatException e) {
+            throw new ValidatorException("Invalid version pattern", e);
+        }
+    }
+
+    private static void write(VersionBump bump) throws IOException {
+        Path tomlFile = Paths.get(bump.packageDir, BALLERINA_TOML);
+        // Hidden temp file, so an interrupted write is never picked up by the package hash. The name is unique, so
+        // concurrent writers of the same package never share a temp file.
+        Path tempFile = Files.createTempFile(tomlFile.getParent(), "." + BALLERINA_TOML, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer content = ByteBuffer.wrap(bump.newContent.getBytes(StandardCharsets.UTF_8));
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                // Synced before the rename, so a crash can't leave the new name pointing to unwritten content.
+                channel.force(true);
+            }
+            // The temp file is only readable by its owner, the package keeps the permissions of its Ballerina.toml.
+            CommonUtils.copyPermissions(tomlFile, tempFile);
+            Files.move(tempFile, tomlFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static <T> List<VersionBump> runInParallel(List<T> inputs, int parallelism,
+                                                       Function<T, VersionBump> task)
+            throws IOException {
+        if (inputs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> inputs.parallelStream().map(task).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while bumping package versions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to bump package versions", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Version change of a package.
+     */
+    public static class VersionBump {
+        private final String packageDir;
+        private final String oldVersion;
+        private final String newVersion;
+        private final String newContent;
+        private final String error;
+
+        VersionBump(String packageDir, String oldVersion, String newVersion, String newContent, String error) {
+            this.packageDir = packageDir;
+            this.oldVersion = oldVersion;
+            this.newVersion = newVersion;
+            this.newContent = newContent;
+            this.error = error;
+        }
+
+        public String getPackageDir() {
+            return packageDir;
+        }
+
+        public String getOldVersion() {
+            return oldVersion;
+        }
+
+        public String getNewVersion() {
+            return newVersion;
+        }
+
+        @Override
+        public String toString() {
+            return packageDir + ": " + oldVersion + " -> " + newVersion;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static com.wso2.choreosamples.validator.Constants.SERVICE_PROPERTIES;
+
+/**
+ * Command line entry point of the validator.
+ * Subcommands are registered by constructor reference and only the invoked one is created. Commands only reach their
+ * libraries from {@link CliCommand#run}, hence the libraries of the other commands are never loaded: hashing commands
+ * never touch the OpenAPI parser. Exit codes are 0 on success, 1 when the command found problems and 2 on invalid
+ * usage.
+ */
+public class ValidatorCli {
+
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private static final Map<String, Supplier<CliCommand>> COMMANDS = new LinkedHashMap<>();
+
+    static {
+        COMMANDS.put("detect", DetectCommand::new);
+        COMMANDS.put("update-hashes", UpdateHashesCommand::new);
+        COMMANDS.put("bump", BumpCommand::new);
+        COMMANDS.put("precheck", PrecheckCommand::new);
+        COMMANDS.put("validate", ValidateCommand::new);
+        COMMANDS.put("archive", ArchiveCommand::new);
+        COMMANDS.put("shard", ShardCommand::new);
+        COMMANDS.put("watch", WatchCommand::new);
+    }
+
+    /**
+     * Options taking no value.
+     */
+    private static final Set<String> FLAGS = Set.of("--dry-run", "--rebuild-plan", "--journal", "--stream", "--plan");
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run a subcommand.
+     *
+     * @param args command line arguments, starting with the subcommand name
+     * @return process exit code
+     */
+    public static int run(String[] args) {
+        if (args.length == 0 || !COMMANDS.containsKey(args[0])) {
+            printUsage();
+            return EXIT_USAGE;
+        }
+        CliCommand command = COMMANDS.get(args[0]).get();
+        Arguments arguments;
+        try {
+            arguments = Arguments.parse(Arrays.asList(args).subList(1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: " + args[0] + " " + command.getUsage());
+            return EXIT_USAGE;
+        }
+        try {
+            return command.run(arguments);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: " + args[0] + " " + command.getUsage());
+            return EXIT_USAGE;
+        } catch (BuildPrecheckException | ValidatorException e) {
+            System.err.println(e.getMessage());
+            return EXIT_FAILURE;
+        } catch (Exception e) {
+            System.err.println(args[0] + " failed: " + e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: <command> <projectBaseDir> [options]");
+        System.err.println("Commands: " + String.join(", ", COMMANDS.keySet()));
+    }
+
+    /**
+     * Command line arguments of a subcommand: positional arguments, <code>--name value</code> options, which may
+     * repeat, and flags.
+     */
+    public static class Arguments {
+        private final List<String> positional;
+        private final Map<String, List<String>> options;
+
+        private Arguments(List<String> positional, Map<String, List<String>> options) {
+            this.positional = positional;
+            this.options = options;
+        }
+
+        static Arguments parse(List<String> args) {
+            List<String> positional = new ArrayList<>();
+            Map<String, List<String>> options = new HashMap<>();
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                if (!arg.startsWith("--")) {
+                    positional.add(arg);
+                } else if (FLAGS.contains(arg)) {
+                    options.computeIfAbsent(arg, k -> new ArrayList<>());
+                } else if (i + 1 < args.size()) {
+                    options.computeIfAbsent(arg, k -> new ArrayList<>()).add(args.get(++i));
+                } else {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+            }
+            return new Arguments(positional, options);
+        }
+
+        /**
+         * Get the project base directory, the first positional argument.
+         *
+         * @return the base project directory
+         */
+        public Path getBaseDir() {
+            if (positional.isEmpty()) {
+                throw new IllegalArgumentException("Missing project base directory");
+            }
+            return Paths.get(positional.get(0));
+        }
+
+        /**
+         * Get the positional arguments following the project base directory.
+         *
+         * @return remaining positional arguments
+         */
+        public List<String> getOperands() {
+            return positional.size() > 1 ? positional.subList(1, positional.size()) : Collections.emptyList();
+        }
+
+        public boolean hasFlag(String name) {
+            return options.containsKey(name);
+        }
+
+        public String getOption(String name, String defaultValue) {
+            List<String> values = options.get(name);
+            return values != null ? values.get(values.size() - 1) : defaultValue;
+        }
+
+        public List<String> getOptions(String name, List<String> defaultValues) {
+            List<String> values = options.get(name);
+            return values != null ? values : defaultValues;
+        }
+
+        public int getIntOption(String name, int defaultValue) {
+            String value = getOption(name, null);
+            try {
+                return value != null ? Integer.parseInt(value) : defaultValue;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+            }
+        }
+
+        int getParallelism() {
+            return getIntOption("--parallelism", ParallelChangeDetector.DEFAULT_PARALLELISM);
+        }
+
+        List<String> getManifestNames() {
+            return getOptions("--manifest", Collections.singletonList(SERVICE_PROPERTIES));
+        }
+
+        /**
+         * Get the packages named by the operands, or every package of the project when none is named.
+         */
+        List<String> getPackageDirs() throws IOException {
+            if (getOperands().isEmpty()) {
+                return PackageIndex.load(getBaseDir()).getPackageDirs();
+            }
+            List<String> packageDirs = new ArrayList<>();
+            for (String operand : getOperands()) {
+                packageDirs.add(getBaseDir().resolve(operand).toString());
+            }
+            return packageDirs;
+        }
+    }
+
+    static class DetectCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [--manifest name]... [--git-base ref] [--parallelism n] [--rebuild-plan]"
+                    + " [--stream]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            List<String> manifestNames = arguments.getManifestNames();
+            if (arguments.hasFlag("--stream")) {
+                return stream(arguments, manifestNames);
+            }
+            ChangeDetector.ChangeReport report = new ChangeDetector(arguments.getBaseDir(), manifestNames,
+                    arguments.getParallelism(), arguments.getOption("--git-base", null)).detect();
+            if (arguments.hasFlag("--rebuild-plan")) {
+                // Changed packages of every manifest along with their dependents, as build waves.
+                Set<String> changed = new TreeSet<>();
+                report.getUpdatedPackages().values().forEach(changed::addAll);
+                List<List<String>> waves = DependencyGraph.load(arguments.getBaseDir()).planRebuild(changed)
+                        .getWaves();
+                for (int i = 0; i < waves.size(); i++) {
+                    for (String packageDir : waves.get(i)) {
+                        System.out.println(i + " " + packageDir);
+                    }
+                }
+                return 0;
+            }
+            report.getUpdatedPackages().forEach((manifestName, packageDirs) -> {
+                for (String packageDir : packageDirs) {
+                    System.out.println(manifestNames.size() > 1 ? manifestName + " " + packageDir : packageDir);
+                }
+            });
+            return 0;
+        }
+
+        /**
+         * Print each changed package as soon as it is classified, so the output can feed builds while the rest of
+         * the project is still being hashed.
+         */
+        private static int stream(Arguments arguments, List<String> manifestNames) throws Exception {
+            if (manifestNames.size() > 1 || arguments.getOption("--git-base", null) != null
+                    || arguments.hasFlag("--rebuild-plan")) {
+                throw new IllegalArgumentException("--stream takes a single --manifest, without --git-base or"
+                        + " --rebuild-plan");
+            }
+            PackageChangePublisher publisher = new PackageChangePublisher(arguments.getBaseDir(),
+                    manifestNames.get(0), arguments.getParallelism());
+            try {
+                publisher.consume(change -> {
+                    System.out.println(change.getPackageDir());
+                    System.out.flush();
+                }).get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            return 0;
+        }
+    }
+
+    static class UpdateHashesCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [package...] [--manifest name]... [--parallelism n] [--journal]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            ChangeDetector changeDetector = new ChangeDetector(arguments.getBaseDir(),
+                    arguments.getManifestNames(), arguments.getParallelism());
+            // Without packages every changed package is updated.
+            ChangeDetector.ChangeReport report = arguments.getOperands().isEmpty() ? changeDetector.detect() : null;
+            for (String manifestName : arguments.getManifestNames()) {
+                List<String> packageDirs =
+                        report != null ? report.getUpdatedPackages(manifestName) : arguments.getPackageDirs();
+                if (arguments.hasFlag("--journal")) {
+                    changeDetector.appendHashes(manifestName, packageDirs);
+                } else {
+                    changeDetector.updateHashes(manifestName, packageDirs);
+                }
+            }
+            return 0;
+        }
+    }
+
+    static class BumpCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [package...] [--manifest name]... [--dry-run] [--parallelism n]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            List<String> packageDirs;
+            if (arguments.getOperands().isEmpty()) {
+                // Without packages every changed package is bumped.
+                packageDirs = new ArrayList<>();
+                new ChangeDetector(arguments.getBaseDir(), arguments.getManifestNames(), arguments.getParallelism())
+                        .detect().getUpdatedPackages().values().stream().flatMap(List::stream).distinct()
+                        .forEach(packageDirs::add);
+            } else {
+                packageDirs = arguments.getPackageDirs();
+            }
+            for (TomlVersionBumper.VersionBump bump : TomlVersionBumper.bumpVersions(packageDirs,
+                    arguments.hasFlag("--dry-run"), arguments.getParallelism())) {
+                System.out.println(bump);
+            }
+            return 0;
+        }
+    }
+
+    static class PrecheckCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [package...] [--parallelism n]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            PrecheckEngine.PrecheckReport report = PrecheckEngine.withDefaultRules().run(
+                    arguments.getBaseDir().toString(), arguments.getPackageDirs(), arguments.getParallelism());
+            report.getViolations().values().forEach(violations -> violations.forEach(System.err::println));
+            return report.isSuccessful() ? 0 : EXIT_FAILURE;
+        }
+    }
+
+    static class ValidateCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [package...] [--parallelism n]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            OpenApiValidator.validateOrThrow(arguments.getBaseDir().toString(), arguments.getPackageDirs(),
+                    arguments.getParallelism());
+            return 0;
+        }
+    }
+
+    static class ArchiveCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [package...] [--parallelism n]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            PackageArchiver.archivePackages(arguments.getBaseDir().toString(), arguments.getPackageDirs(),
+                    arguments.getParallelism()).forEach((packageDir, archive) ->
+                    System.out.println(packageDir + " " + archive));
+            return 0;
+        }
+    }
+
+    static class ShardCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> --index i --count n [--output dir] [--manifest name]... [--parallelism n]"
+                    + " | <projectBaseDir> --merge dir [--manifest name]... | <projectBaseDir> --plan --count n";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            Path baseDir = arguments.getBaseDir();
+            String mergeDir = arguments.getOption("--merge", null);
+            if (mergeDir != null) {
+                for (String manifestName : arguments.getManifestNames()) {
+                    int merged = PackageSharder.mergeShards(baseDir, manifestName, Paths.get(mergeDir));
+                    System.out.println(manifestName + ": merged " + merged + " packages");
+                }
+                return 0;
+            }
+            int count = arguments.getIntOption("--count", 0);
+            if (count < 1) {
+                throw new IllegalArgumentException("Missing --count");
+            }
+            if (arguments.hasFlag("--plan")) {
+                List<List<String>> assignment = PackageSharder.assign(baseDir,
+                        PackageIndex.load(baseDir).getPackageDirs(), count);
+                for (int i = 0; i < assignment.size(); i++) {
+                    for (String packageDir : assignment.get(i)) {
+                        System.out.println(i + " " + packageDir);
+                    }
+                }
+                return 0;
+            }
+            ChangeDetector.ChangeReport report = PackageSharder.runShard(baseDir, arguments.getManifestNames(),
+                    arguments.getIntOption("--index", -1), count, Paths.get(arguments.getOption("--output", ".")),
+                    arguments.getParallelism());
+            report.getUpdatedPackages().forEach((manifestName, packageDirs) ->
+                    packageDirs.forEach(packageDir -> System.out.println(manifestName + " " + packageDir)));
+            return 0;
+        }
+    }
+
+    static class WatchCommand implements CliCommand {
+        @Override
+        public String getUsage() {
+            return "<projectBaseDir> [--manifest name] [--port port] [--debounce millis]";
+        }
+
+        @Override
+        public int run(Arguments arguments) throws Exception {
+            return PackageWatcher.run(arguments.getBaseDir(), arguments.getManifestNames().get(0),
+                    Duration.ofMillis(arguments.getIntOption("--debounce",
+                            (int) PackageWatcher.DEFAULT_DEBOUNCE_MILLIS)),
+                    arguments.getIntOption("--port", -1));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the validator hot paths.
+ * Metrics are enabled with the <code>choreo.validator.metrics</code> system property. When enabled every timed phase
+ * is also recorded as a {@link PhaseEvent} JFR event, and a JSON summary is written at JVM exit to the file named by
+ * the <code>choreo.validator.metrics.output</code> system property, or to the standard error stream. When disabled
+ * the timers are a shared no-op instance and the counters are never touched, so the instrumentation can stay in place.
+ * The JFR events are disabled along with the rest, enabling them in a recording settings file alone records nothing.
+ */
+public class ValidatorMetrics {
+
+    public static final String ENABLED_PROPERTY = "choreo.validator.metrics";
+    public static final String OUTPUT_PROPERTY = "choreo.validator.metrics.output";
+
+    private static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final Timer NO_OP_TIMER = () -> {
+    };
+
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    private static final Histogram[] HISTOGRAMS = new Histogram[Phase.values().length];
+
+    static {
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTERS[i] = new LongAdder();
+        }
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(ValidatorMetrics::writeSummary));
+        }
+    }
+
+    /**
+     * Phases of a validator run with a latency histogram each.
+     */
+    public enum Phase {
+        DISCOVERY, CHANGE_DETECTION, HASHING, PROPERTIES_IO, UPDATE_HASHES, TOML_BUMP
+    }
+
+    /**
+     * Counters of a validator run.
+     */
+    public enum Counter {
+        DIRECTORIES_VISITED, FILES_VISITED, BYTES_HASHED, PACKAGES_CHANGED, CACHE_HITS, CACHE_MISSES
+    }
+
+    /**
+     * Running timer of a phase, recorded when closed.
+     */
+    @FunctionalInterface
+    public interface Timer extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Start timing a phase, to be used with try-with-resources.
+     *
+     * @param phase phase to time
+     * @return the running timer
+     */
+    public static Timer time(Phase phase) {
+        if (!ENABLED) {
+            return NO_OP_TIMER;
+        }
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase.name();
+        event.begin();
+        long start = System.nanoTime();
+        return () -> {
+            HISTOGRAMS[phase.ordinal()].record(System.nanoTime() - start);
+            event.commit();
+        };
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param counter counter to increment
+     * @param delta   amount to add
+     */
+    public static void increment(Counter counter, long delta) {
+        if (ENABLED) {
+            COUNTERS[counter.ordinal()].add(delta);
+        }
+    }
+
+    /**
+     * Get the current value of a counter.
+     *
+     * @param counter counter to read
+     * @return the counter value
+     */
+    public static long get(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /**
+     * Render the counters and the latency histograms as JSON. Latencies are in microseconds and the percentiles are
+     * the upper bounds of their power of two histogram buckets.
+     *
+     * @return the JSON summary
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(counter.name().toLowerCase(Locale.ROOT)).append("\":").append(get(counter));
+        }
+        json.append("},\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":");
+            HISTOGRAMS[phase.ordinal()].appendJson(json);
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void writeSummary() {
+        String output = System.getProperty(OUTPUT_PROPERTY);
+        if (output == null) {
+            System.err.println(toJson());
+            return;
+        }
+        try {
+            Files.writeString(Paths.get(output), toJson() + System.lineSeparator(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Unable to write the metrics summary to " + output + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lock free latency histogram with a bucket per power of two nanoseconds.
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        void appendJson(StringBuilder json) {
+            long total = count.sum();
+            json.append("{\"count\":").append(total)
+                    .append(",\"total_us\":").append(sum.sum() / 1000)
+                    .append(",\"max_us\":").append(max.get() / 1000)
+                    .append(",\"p50_us\":").append(percentile(total, 0.50) / 1000)
+                    .append(",\"p90_us\":").append(percentile(total, 0.90) / 1000)
+                    .append(",\"p99_us\":").append(percentile(total, 0.99) / 1000)
+                    .append('}');
+        }
+
+        private long percentile(long total, double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
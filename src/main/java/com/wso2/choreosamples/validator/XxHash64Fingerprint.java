@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.wso2.choreosamples.validator.Constants.XXH64;
+
+/**
+ * Pure Java streaming implementation of the non-cryptographic XXH64 hash, with a zero seed.
+ * Change detection doesn't need cryptographic strength, and XXH64 is several times faster than MD5.
+ */
+public class XxHash64Fingerprint implements FingerprintAlgorithm {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+
+    @Override
+    public String getName() {
+        return XXH64;
+    }
+
+    @Override
+    public FingerprintHasher newHasher() {
+        return new Hasher();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long getLong(byte[] bytes, int index) {
+        return (bytes[index] & 0xFFL) | (bytes[index + 1] & 0xFFL) << 8 | (bytes[index + 2] & 0xFFL) << 16
+                | (bytes[index + 3] & 0xFFL) << 24 | (bytes[index + 4] & 0xFFL) << 32
+                | (bytes[index + 5] & 0xFFL) << 40 | (bytes[index + 6] & 0xFFL) << 48
+                | (bytes[index + 7] & 0xFFL) << 56;
+    }
+
+    private static long getUnsignedInt(byte[] bytes, int index) {
+        return (bytes[index] & 0xFFL) | (bytes[index + 1] & 0xFFL) << 8 | (bytes[index + 2] & 0xFFL) << 16
+                | (bytes[index + 3] & 0xFFL) << 24;
+    }
+
+    /**
+     * Streaming XXH64 state. Input is consumed in 32 byte stripes, and a partial stripe is kept in memory until the
+     * next update or the final hash.
+     */
+    private static class Hasher implements FingerprintHasher {
+        private final byte[] memory = new byte[STRIPE_SIZE];
+        private int memorySize;
+        private long totalLength;
+        private long v1 = PRIME1 + PRIME2;
+        private long v2 = PRIME2;
+        private long v3 = 0;
+        private long v4 = -PRIME1;
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            update(ByteBuffer.wrap(input, offset, length));
+        }
+
+        @Override
+        public void update(ByteBuffer input) {
+            ByteOrder order = input.order();
+            input.order(ByteOrder.LITTLE_ENDIAN);
+            int length = input.remaining();
+            totalLength += length;
+            if (memorySize + length < STRIPE_SIZE) {
+                input.get(memory, memorySize, length);
+                memorySize += length;
+                input.order(order);
+                return;
+            }
+            if (memorySize > 0) {
+                int fill = STRIPE_SIZE - memorySize;
+                input.get(memory, memorySize, fill);
+                processStripe(getLong(memory, 0), getLong(memory, 8), getLong(memory, 16), getLong(memory, 24));
+                memorySize = 0;
+            }
+            while (input.remaining() >= STRIPE_SIZE) {
+                processStripe(input.getLong(), input.getLong(), input.getLong(), input.getLong());
+            }
+            memorySize = input.remaining();
+            input.get(memory, 0, memorySize);
+            input.order(order);
+        }
+
+        private void processStripe(long lane1, long lane2, long lane3, long lane4) {
+            v1 = round(v1, lane1);
+            v2 = round(v2, lane2);
+            v3 = round(v3, lane3);
+            v4 = round(v4, lane4);
+        }
+
+        @Override
+        public String getHashString() {
+            long hash;
+            if (totalLength >= STRIPE_SIZE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                        + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += totalLength;
+
+            int index = 0;
+            for (; index + 8 <= memorySize; index += 8) {
+                hash ^= round(0, getLong(memory, index));
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (index + 4 <= memorySize) {
+                hash ^= getUnsignedInt(memory, index) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+                index += 4;
+            }
+            for (; index < memorySize; index++) {
+                hash ^= (memory[index] & 0xFFL) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return String.format("%016x", hash);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.wso2.choreosamples.validator.Constants.FINGERPRINT_ALGORITHM_KEY;
+import static com.wso2.choreosamples.validator.Constants.SERVICE_PROPERTIES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void reportsEmptyFingerprintAsChanged() throws Exception {
+        assertSame(FingerprintAlgorithms.MD5, FingerprintAlgorithms.algorithmOf(""));
+
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        Files.writeString(project.resolve(SERVICE_PROPERTIES), FINGERPRINT_ALGORITHM_KEY + "=XXH64\ncommon=\n");
+        ChangeDetector changeDetector =
+                new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        changeDetector.updateHashes(SERVICE_PROPERTIES,
+                Collections.singletonList(project.resolve("greeter").toString()));
+
+        List<String> updated = changeDetector.detect(Collections.singletonList(project.resolve("common").toString()))
+                .getUpdatedPackages(SERVICE_PROPERTIES);
+        assertEquals(Collections.singletonList(project.resolve("common").toString()), updated);
+    }
+
+    @Test
+    public void rehashesFingerprintOfUnknownAlgorithm() throws Exception {
+        assertSame(FingerprintAlgorithms.MD5, FingerprintAlgorithms.algorithmOf("{XXH3}0123456789abcdef"));
+
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        Files.writeString(project.resolve(SERVICE_PROPERTIES),
+                FINGERPRINT_ALGORITHM_KEY + "=XXH64\ncommon={XXH3}0123456789abcdef\n");
+        ChangeDetector changeDetector =
+                new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        List<String> common = Collections.singletonList(project.resolve("common").toString());
+        assertEquals(common, changeDetector.detect(common).getUpdatedPackages(SERVICE_PROPERTIES));
+
+        changeDetector.updateHashes(SERVICE_PROPERTIES, common);
+        assertTrue(ManifestStore.lookup(project.resolve(SERVICE_PROPERTIES), "common").startsWith("{XXH64}"));
+        assertEquals(Collections.emptyList(), changeDetector.detect(common).getUpdatedPackages(SERVICE_PROPERTIES));
+    }
+
+    @Test
+    public void hashesPackagesChangedInCommits() throws Exception {
+        Path project = TestProjects.copyHashed("dependency-graph", tempDir, SERVICE_PROPERTIES);
+        ChangeDetector changeDetector =
+                new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        git(project, "init", "-q");
+        git(project, "add", "-A");
+        git(project, "commit", "-q", "-m", "base");
+        git(project, "tag", "base");
+
+        // The change of greeter is committed along with its new hash, the change of common is not.
+        Files.writeString(project.resolve("greeter").resolve("main.bal"), "// changed\n");
+        changeDetector.updateHashes(SERVICE_PROPERTIES,
+                Collections.singletonList(project.resolve("greeter").toString()));
+        Files.writeString(project.resolve("common").resolve("main.bal"), "// changed\n");
+        git(project, "commit", "-q", "-a", "-m", "change");
+
+        List<String> updated = new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1, "base")
+                .detect().getUpdatedPackages(SERVICE_PROPERTIES);
+        assertEquals(Collections.singletonList(project.resolve("common").toString()), updated);
+    }
+
+    @Test
+    public void hashesBothPackagesOfMovedFile() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        Files.writeString(project.resolve("common").resolve("util.bal"), "public function util() {\n}\n");
+        Files.writeString(project.resolve(SERVICE_PROPERTIES), "");
+        ChangeDetector changeDetector =
+                new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        changeDetector.updateHashes(SERVICE_PROPERTIES, PackageIndex.load(project).getPackageDirs());
+        git(project, "init", "-q");
+        git(project, "add", "-A");
+        git(project, "commit", "-q", "-m", "base");
+        git(project, "tag", "base");
+
+        // Git would report the move as a rename, listing only the path in greeter.
+        git(project, "mv", "common/util.bal", "greeter/util.bal");
+        git(project, "commit", "-q", "-m", "move");
+        List<String> moved = List.of(project.resolve("common").toString(), project.resolve("greeter").toString());
+        assertEquals(moved, sorted(new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1,
+                "base").detect().getUpdatedPackages(SERVICE_PROPERTIES)));
+
+        // The same move back, staged but not committed, against hashes committed after the first move.
+        changeDetector.updateHashes(SERVICE_PROPERTIES, moved);
+        git(project, "commit", "-q", "-a", "-m", "update hashes");
+        git(project, "tag", "moved");
+        git(project, "mv", "greeter/util.bal", "common/util.bal");
+        assertEquals(moved, sorted(new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1,
+                "moved").detect().getUpdatedPackages(SERVICE_PROPERTIES)));
+    }
+
+    @Test
+    public void keepsEntryOfRemovedPackage() throws Exception {
+        Path project = TestProjects.copyHashed("dependency-graph", tempDir, SERVICE_PROPERTIES);
+        ChangeDetector changeDetector =
+                new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        assertEquals(Collections.emptyList(), changeDetector.detect().getUpdatedPackages(SERVICE_PROPERTIES));
+
+        // Entries are only looked up for the packages found in the project, so a removed package isn't a change.
+        try (Stream<Path> paths = Files.walk(project.resolve("app"))) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+        assertEquals(Collections.emptyList(), changeDetector.detect().getUpdatedPackages(SERVICE_PROPERTIES));
+        assertNotNull(ManifestStore.load(project.resolve(SERVICE_PROPERTIES)).get("app"));
+    }
+
+    private static List<String> sorted(List<String> packageDirs) {
+        List<String> sorted = new ArrayList<>(packageDirs);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static void git(Path dir, String... args) throws Exception {
+        List<String> command =
+                new ArrayList<>(List.of("git", "-c", "user.name=test", "-c", "user.email=test@localhost"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertEquals(0, process.waitFor(), "git " + String.join(" ", args));
+    }
+}
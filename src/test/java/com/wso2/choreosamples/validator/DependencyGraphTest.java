@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DependencyGraphTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void readsLocalEdgesFromDependenciesToml() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        DependencyGraph graph = DependencyGraph.load(project);
+
+        assertEquals(Set.of(dir(project, "common")), graph.getDependencies(dir(project, "greeter")));
+        assertEquals(Set.of(dir(project, "greeter")), graph.getDependencies(dir(project, "app")));
+        assertTrue(graph.getDependencies(dir(project, "common")).isEmpty());
+        assertEquals(Set.of(dir(project, "app")), graph.getDependents(dir(project, "greeter")));
+    }
+
+    @Test
+    public void plansRebuildOfDependents() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        DependencyGraph.RebuildPlan plan = DependencyGraph.load(project)
+                .planRebuild(Collections.singletonList(dir(project, "common")));
+
+        List<List<String>> waves = Arrays.asList(List.of(dir(project, "common")), List.of(dir(project, "greeter")),
+                List.of(dir(project, "app")));
+        assertEquals(waves, plan.getWaves());
+    }
+
+    @Test
+    public void reusesCachedGraph() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        DependencyGraph.load(project);
+        DependencyGraph graph = DependencyGraph.load(project);
+
+        assertEquals(Set.of(dir(project, "common")), graph.getDependencies(dir(project, "greeter")));
+    }
+
+    @Test
+    public void reportsUnexpectedTableShape() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        // A Ballerina.toml with an array of package tables instead of a single package table.
+        Files.writeString(project.resolve("tools/cli/Ballerina.toml"),
+                "[[package]]\norg = \"choreo\"\nname = \"cli\"\n");
+
+        ValidatorException e = assertThrows(ValidatorException.class, () -> DependencyGraph.load(project));
+        assertTrue(e.getMessage().contains("Ballerina.toml"), e.getMessage());
+    }
+
+    @Test
+    public void plansNothingWithoutChanges() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+
+        assertTrue(DependencyGraph.load(project).planRebuild(Collections.emptyList()).getWaves().isEmpty());
+    }
+
+    private static String dir(Path project, String packageName) {
+        return project.resolve(packageName).toString();
+    }
+}
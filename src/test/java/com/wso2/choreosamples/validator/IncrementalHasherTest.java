@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IncrementalHasherTest {
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void matchesFullHashAcrossEdits() throws Exception {
+        Path packageDir = tempDir.resolve("greeter");
+        Files.createDirectories(packageDir.resolve("modules"));
+        write(packageDir.resolve("main.bal"), "public function main() {\n}\n", 0);
+        write(packageDir.resolve("modules/util.bal"), "function util() {\n}\n", 0);
+        write(packageDir.resolve("Ballerina.toml"), "[package]\nname = \"greeter\"\n", 0);
+        assertHashMatches(packageDir);
+
+        assertEquals(Collections.emptyList(), assertHashMatches(packageDir).getChangedFiles());
+
+        write(packageDir.resolve("modules/util.bal"), "function util() {\n    return;\n}\n", 1);
+        assertEquals(Collections.singletonList("modules/util.bal"), assertHashMatches(packageDir).getChangedFiles());
+
+        Files.setLastModifiedTime(packageDir.resolve("main.bal"), FileTime.fromMillis(AN_HOUR_AGO + 2000));
+        assertEquals(Collections.emptyList(), assertHashMatches(packageDir).getChangedFiles());
+
+        write(packageDir.resolve("modules/added.bal"), "function added() {\n}\n", 3);
+        assertEquals(Collections.singletonList("modules/added.bal"), assertHashMatches(packageDir).getChangedFiles());
+
+        Files.delete(packageDir.resolve("main.bal"));
+        assertEquals(Collections.singletonList("main.bal"), assertHashMatches(packageDir).getChangedFiles());
+    }
+
+    @Test
+    public void distrustsFileRewrittenDuringRun() throws Exception {
+        Path packageDir = tempDir.resolve("greeter");
+        Files.createDirectories(packageDir);
+        write(packageDir.resolve("Ballerina.toml"), "[package]\nname = \"greeter\"\n", 0);
+        Path mainFile = packageDir.resolve("main.bal");
+
+        FileStatCache cache = FileStatCache.load(tempDir);
+        // Modified within the racy window before the run started, then hashed.
+        long modifiedTime = System.currentTimeMillis() - FileStatCache.RACY_WINDOW_MILLIS + 500;
+        Files.writeString(mainFile, "// first\n");
+        Files.setLastModifiedTime(mainFile, FileTime.fromMillis(modifiedTime));
+        IncrementalHasher.hashPackage(packageDir.toString(), cache, FingerprintAlgorithms.MD5);
+        // Rewritten with the same size within the same timestamp, while the run goes on for a while.
+        Files.writeString(mainFile, "// again\n");
+        Files.setLastModifiedTime(mainFile, FileTime.fromMillis(modifiedTime));
+        Thread.sleep(1000);
+        cache.save();
+
+        assertEquals(Collections.singletonList("main.bal"), assertHashMatches(packageDir).getChangedFiles());
+    }
+
+    private IncrementalHasher.PackageDigest assertHashMatches(Path packageDir) throws Exception {
+        FileStatCache cache = FileStatCache.load(tempDir);
+        IncrementalHasher.PackageDigest digest =
+                IncrementalHasher.hashPackage(packageDir.toString(), cache, FingerprintAlgorithms.MD5);
+        cache.save();
+        assertEquals(CommonUtils.generateHashString(packageDir.toString()), digest.getPackageHash());
+        return digest;
+    }
+
+    private static void write(Path file, String content, int second) throws Exception {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(AN_HOUR_AGO + second * 1000L));
+    }
+}
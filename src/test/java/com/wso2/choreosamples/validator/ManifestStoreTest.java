@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ManifestStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writesWhatPropertiesReads() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore store = ManifestStore.loadIfExists(manifestFile);
+        Map<String, String> expected = trickyEntries();
+        expected.forEach(store::put);
+        store.save();
+
+        assertEquals(expected, loadWithProperties(manifestFile));
+        assertEquals(expected, ManifestStore.load(manifestFile).getEntries());
+    }
+
+    @Test
+    public void readsWhatPropertiesWrites() throws Exception {
+        Properties properties = new Properties();
+        properties.putAll(trickyEntries());
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        properties.store(stored, "written by java.util.Properties");
+        Path manifestFile = tempDir.resolve("service.properties");
+        Files.write(manifestFile, stored.toByteArray());
+
+        assertEquals(trickyEntries(), ManifestStore.load(manifestFile).getEntries());
+    }
+
+    @Test
+    public void readsContinuationsAndLineEndingsLikeProperties() throws Exception {
+        String content = "# comment\r\n"
+                + "! another comment\r\n"
+                + "plain=value\r\n"
+                + "continued = first, \\\r\n"
+                + "    second, \\\n"
+                + "    third\r\n"
+                + "  indented : colon separated\n"
+                + "spaced value\n"
+                + "escaped\\ key=tab\\there\r"
+                + "unicode=caf\\u00e9 \\u65e5\\u672c\n"
+                + "latin1=caf\u00e9\n"
+                + "empty=\n"
+                + "odd\\\\=backslashes\\\\\n"
+                + "plain=overridden\n";
+        Path manifestFile = tempDir.resolve("service.properties");
+        Files.write(manifestFile, content.getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(loadWithProperties(manifestFile), ManifestStore.load(manifestFile).getEntries());
+    }
+
+    @Test
+    public void appendsBatchToJournal() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore store = ManifestStore.loadIfExists(manifestFile);
+        store.put("common", "{XXH64}0001");
+        store.save();
+
+        Map<String, String> batch = new LinkedHashMap<>();
+        batch.put("greeter", "{XXH64}0002");
+        batch.put("app name", "{XXH64}0003");
+        store.appendAll(batch);
+
+        Path journalFile = ManifestStore.journalFile(manifestFile);
+        assertEquals(2, Files.readAllLines(journalFile, StandardCharsets.ISO_8859_1).size());
+        Map<String, String> expected = new TreeMap<>(batch);
+        expected.put("common", "{XXH64}0001");
+        assertEquals(expected, ManifestStore.load(manifestFile).getEntries());
+    }
+
+    @Test
+    public void compactsJournalByAppendedLines() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore.loadIfExists(manifestFile).save();
+        // Appending the same key from separate runs must still reach the compaction threshold.
+        for (int i = 0; i < ManifestStore.MIN_COMPACTION_ENTRIES; i++) {
+            ManifestStore.load(manifestFile).append("greeter", "{XXH64}" + i);
+        }
+
+        assertFalse(Files.exists(ManifestStore.journalFile(manifestFile)));
+        assertEquals("{XXH64}" + (ManifestStore.MIN_COMPACTION_ENTRIES - 1),
+                ManifestStore.load(manifestFile).get("greeter"));
+    }
+
+    @Test
+    public void keepsPermissionsOfManifest() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore.loadIfExists(manifestFile).save();
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(manifestFile, permissions);
+
+        ManifestStore store = ManifestStore.load(manifestFile);
+        store.put("greeter", "{XXH64}0001");
+        store.save();
+        assertEquals(permissions, Files.getPosixFilePermissions(manifestFile));
+        for (int i = 0; i < ManifestStore.MIN_COMPACTION_ENTRIES; i++) {
+            store.append("package" + i, "{XXH64}0002");
+        }
+        assertFalse(Files.exists(ManifestStore.journalFile(manifestFile)));
+        assertEquals(permissions, Files.getPosixFilePermissions(manifestFile));
+    }
+
+    @Test
+    public void serializesWritersOfSameProcess() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore.loadIfExists(manifestFile).save();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String key = "package" + t;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < ManifestStore.MIN_COMPACTION_ENTRIES; i++) {
+                        ManifestStore store = ManifestStore.load(manifestFile);
+                        store.append(key, "{XXH64}" + i);
+                        store.save();
+                    }
+                    return null;
+                }));
+            }
+            // A file lock is held by the whole process, so unserialized writers fail with an overlapping lock.
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertFalse(Files.exists(ManifestStore.journalFile(manifestFile)));
+    }
+
+    @Test
+    public void keepsLinesAppendedByOtherWriters() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore.loadIfExists(manifestFile).save();
+        ManifestStore first = ManifestStore.load(manifestFile);
+        ManifestStore second = ManifestStore.load(manifestFile);
+
+        second.append("greeter", "{XXH64}0002");
+        first.append("common", "{XXH64}0001");
+
+        ManifestStore reloaded = ManifestStore.load(manifestFile);
+        assertEquals("{XXH64}0001", reloaded.get("common"));
+        assertEquals("{XXH64}0002", reloaded.get("greeter"));
+    }
+
+    @Test
+    public void dropsOnlyTornJournalLine() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore.loadIfExists(manifestFile).save();
+        ManifestStore store = ManifestStore.load(manifestFile);
+        Files.writeString(ManifestStore.journalFile(manifestFile), "common={XXH64}0001\ngreeter={XXH6");
+
+        store.append("app", "{XXH64}0003");
+
+        assertEquals(Arrays.asList("common={XXH64}0001", "app={XXH64}0003"),
+                Files.readAllLines(ManifestStore.journalFile(manifestFile)));
+    }
+
+    @Test
+    public void rejectsIndexOfRewrittenManifest() throws Exception {
+        Path manifestFile = tempDir.resolve("service.properties");
+        ManifestStore store = ManifestStore.loadIfExists(manifestFile);
+        for (int i = 0; i < ManifestStore.INDEX_MIN_ENTRIES; i++) {
+            store.put(String.format("packages/p%05d", i), "{XXH64}000000000000000" + (i % 10));
+        }
+        store.save();
+        assertEquals("{XXH64}0000000000000007", ManifestIndex.open(manifestFile).lookup("packages/p00017"));
+
+        // Same size and modification time, different content.
+        FileTime modifiedTime = Files.getLastModifiedTime(manifestFile);
+        String content = Files.readString(manifestFile, StandardCharsets.ISO_8859_1);
+        Files.writeString(manifestFile, content.replace("p00017={XXH64}0000000000000007",
+                "p00017={XXH64}0000000000000008"), StandardCharsets.ISO_8859_1);
+        Files.setLastModifiedTime(manifestFile, modifiedTime);
+
+        assertNull(ManifestIndex.open(manifestFile));
+        assertEquals("{XXH64}0000000000000008", ManifestStore.lookup(manifestFile, "packages/p00017"));
+    }
+
+    private static Map<String, String> trickyEntries() {
+        Map<String, String> entries = new TreeMap<>();
+        entries.put("plain/package", "{XXH64}0123456789abcdef");
+        entries.put("with space", " leading and trailing ");
+        entries.put("sep=arators:", "a=b:c");
+        entries.put("#not a comment", "!not either");
+        entries.put("back\\slash", "C:\\path\\");
+        entries.put("tab\tkey", "line\nbreak\r\nand\ftab\t");
+        entries.put("caf\u00e9", "\u65e5\u672c\u8a9e \u00fc\u00df");
+        entries.put("empty", "");
+        return entries;
+    }
+
+    private static Map<String, String> loadWithProperties(Path file) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        Map<String, String> entries = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            entries.put(key, properties.getProperty(key));
+        }
+        return entries;
+    }
+}
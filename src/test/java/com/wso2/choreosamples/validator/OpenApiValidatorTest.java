@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OpenApiValidatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void cacheKeyCoversNestedRefs() throws Exception {
+        Path spec = writeSpecTree(tempDir.resolve("service"));
+        String key = OpenApiValidator.cacheKey(spec, new HashMap<>());
+
+        Files.writeString(tempDir.resolve("service/schemas/common.yaml"), "Error:\n  type: string\n");
+
+        assertNotEquals(key, OpenApiValidator.cacheKey(spec, new HashMap<>()));
+    }
+
+    @Test
+    public void cacheKeyStopsAtRefCycles() throws Exception {
+        Path spec = writeSpecTree(tempDir.resolve("service"));
+        Files.writeString(tempDir.resolve("service/schemas/common.yaml"),
+                "Error:\n  $ref: './pet.yaml#/Pet'\n");
+
+        String key = OpenApiValidator.cacheKey(spec, new HashMap<>());
+
+        assertEquals(key, OpenApiValidator.cacheKey(spec, new HashMap<>()));
+    }
+
+    @Test
+    public void nonUtf8FileIsNotSpec() throws Exception {
+        Path file = tempDir.resolve("resource.json");
+        Files.write(file, new byte[]{'{', (byte) 0xC3, (byte) 0x28, '}'});
+
+        assertNull(OpenApiValidator.readIfSpec(file));
+    }
+
+    @Test
+    public void specIsReadPastDetectionPrefix() throws Exception {
+        Path spec = tempDir.resolve("openapi.yaml");
+        String content = "openapi: 3.0.1\n" + "# padding\n".repeat(2000);
+        Files.writeString(spec, content);
+
+        assertArrayEquals(content.getBytes(StandardCharsets.UTF_8), OpenApiValidator.readIfSpec(spec));
+    }
+
+    @Test
+    public void copiedSpecTreesShareKey() throws Exception {
+        Path first = writeSpecTree(tempDir.resolve("first"));
+        Path second = writeSpecTree(tempDir.resolve("second"));
+
+        assertEquals(OpenApiValidator.cacheKey(first, new HashMap<>()),
+                OpenApiValidator.cacheKey(second, new HashMap<>()));
+    }
+
+    private static Path writeSpecTree(Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("schemas"));
+        Path spec = dir.resolve("openapi.yaml");
+        Files.writeString(spec, "openapi: 3.0.1\n"
+                + "info:\n  title: Pets\n  version: 1.0.0\n"
+                + "paths:\n  /pets:\n    get:\n      responses:\n        '200':\n          description: ok\n"
+                + "          content:\n            application/json:\n              schema:\n"
+                + "                $ref: './schemas/pet.yaml#/Pet'\n");
+        Files.writeString(dir.resolve("schemas/pet.yaml"), "Pet:\n  type: object\n"
+                + "  properties:\n    error:\n      $ref: './common.yaml#/Error'\n");
+        Files.writeString(dir.resolve("schemas/common.yaml"), "Error:\n  type: object\n");
+        return spec;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackageArchiverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writesSameBytesForSameContent() throws Exception {
+        Path first = TestProjects.copy("package-archive", tempDir.resolve("first")).resolve("greeter");
+        Path second = TestProjects.copy("package-archive", tempDir.resolve("second")).resolve("greeter");
+        try (Stream<Path> paths = Files.walk(second)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - 86_400_000L));
+            }
+        }
+
+        byte[] archive = archive(first);
+        assertArrayEquals(archive, archive(first));
+        assertArrayEquals(archive, archive(second));
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertEquals(LocalDateTime.of(1980, 2, 1, 0, 0), entry.getTimeLocal());
+            }
+        }
+        assertEquals(List.of("Ballerina.toml", "main.bal", "modules/util/util.bal"), names);
+    }
+
+    @Test
+    public void keepsOnlyCurrentArchiveOfPackage() throws Exception {
+        Path project = TestProjects.copy("package-archive", tempDir);
+        List<String> packageDirs = Collections.singletonList(project.resolve("greeter").toString());
+
+        Path archive = PackageArchiver.archivePackages(project.toString(), packageDirs, 1).get(packageDirs.get(0));
+        byte[] content = Files.readAllBytes(archive);
+        assertEquals(archive, PackageArchiver.archivePackages(project.toString(), packageDirs, 1)
+                .get(packageDirs.get(0)));
+        assertArrayEquals(content, Files.readAllBytes(archive));
+
+        Files.writeString(project.resolve("greeter").resolve("main.bal"), "public function main() {\n}\n");
+        Path changedArchive =
+                PackageArchiver.archivePackages(project.toString(), packageDirs, 1).get(packageDirs.get(0));
+        assertNotEquals(archive, changedArchive);
+        assertFalse(Files.exists(archive));
+        try (Stream<Path> archives = Files.list(changedArchive.getParent())) {
+            assertEquals(Collections.singletonList(changedArchive),
+                    archives.filter(path -> path.toString().endsWith(".zip")).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void archivesNothingWithoutPackages() throws Exception {
+        Path project = TestProjects.copy("package-archive", tempDir);
+
+        assertTrue(PackageArchiver.archivePackages(project.toString(), Collections.emptyList(), 1).isEmpty());
+    }
+
+    private static byte[] archive(Path packageDir) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PackageArchiver.writeArchive(packageDir.toString(), out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackageChangePublisherTest {
+
+    private static final String SERVICE_PROPERTIES = "service.properties";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void publishesEveryChangedPackageOnce() throws Exception {
+        Path project = TestProjects.copyHashed("parallel-detection", tempDir, SERVICE_PROPERTIES);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+        Files.writeString(project.resolve("bravo").resolve("main.bal"), "// changed\n");
+        Files.writeString(project.resolve("echo").resolve("main.bal"), "// changed\n");
+        writePackage(project.resolve("added"));
+
+        Map<String, PackageChange.Reason> changes = new TreeMap<>();
+        PackageChangePublisher publisher = new PackageChangePublisher(project, SERVICE_PROPERTIES, 4, 1);
+        publisher.consume(change -> assertNull(changes.put(change.getPackageDir(), change.getReason())))
+                .get(30, TimeUnit.SECONDS);
+
+        Map<String, PackageChange.Reason> expected = new TreeMap<>();
+        expected.put(project.resolve("added").toString(), PackageChange.Reason.ADDED);
+        expected.put(project.resolve("bravo").toString(), PackageChange.Reason.MODIFIED);
+        expected.put(project.resolve("echo").toString(), PackageChange.Reason.MODIFIED);
+        assertEquals(expected, changes);
+        assertEquals(packageDirs.size() + 1, publisher.getHashedPackageCount());
+        assertTrue(publisher.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void slowSubscriberThrottlesHashing() throws Exception {
+        int packageCount = 40;
+        for (int i = 0; i < packageCount; i++) {
+            writePackage(tempDir.resolve(String.format("package%02d", i)));
+        }
+        Files.writeString(tempDir.resolve(SERVICE_PROPERTIES), "");
+        int parallelism = 2;
+        int bufferSize = 1;
+        PackageChangePublisher publisher = new PackageChangePublisher(tempDir, SERVICE_PROPERTIES, parallelism,
+                bufferSize);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription().request(1);
+        assertNotNull(subscriber.changes.poll(30, TimeUnit.SECONDS));
+        Thread.sleep(500);
+        // Every stage holds at most its buffer, plus the item it is handing over, and the workers their package.
+        int bound = parallelism + 3 * (bufferSize + 1);
+        assertTrue(publisher.getHashedPackageCount() <= bound, publisher.getHashedPackageCount() + " > " + bound);
+
+        subscriber.subscription().request(Long.MAX_VALUE);
+        subscriber.done.get(30, TimeUnit.SECONDS);
+        assertEquals(packageCount - 1, subscriber.changes.size());
+        assertEquals(packageCount, publisher.getHashedPackageCount());
+    }
+
+    @Test
+    public void savesHashedPackagesAndShutsDownWhenCancelled() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writePackage(tempDir.resolve(String.format("package%02d", i)));
+        }
+        Files.writeString(tempDir.resolve(SERVICE_PROPERTIES), "");
+        PackageChangePublisher publisher = new PackageChangePublisher(tempDir, SERVICE_PROPERTIES, 2, 1);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription().request(1);
+        PackageChange first = subscriber.changes.poll(30, TimeUnit.SECONDS);
+        assertNotNull(first);
+
+        subscriber.subscription().cancel();
+        assertTrue(publisher.awaitTermination(30, TimeUnit.SECONDS));
+        int hashed = publisher.getHashedPackageCount();
+        assertTrue(hashed < 20, hashed + " packages hashed");
+
+        // The cache holds exactly the packages hashed before the pipeline settled.
+        FileStatCache cache = FileStatCache.load(tempDir);
+        int cached = 0;
+        for (int i = 0; i < 20; i++) {
+            if (cache.get(String.format("package%02d", i)) != null) {
+                cached++;
+            }
+        }
+        assertEquals(hashed, cached);
+        assertNotNull(cache.get(tempDir.relativize(Path.of(first.getPackageDir())).toString()));
+        assertEquals(0, subscriber.changes.size());
+        assertFalse(subscriber.done.isDone());
+    }
+
+    @Test
+    public void reportsHashingErrors() throws Exception {
+        writePackage(tempDir.resolve("alpha"));
+        Files.writeString(tempDir.resolve(SERVICE_PROPERTIES), "");
+        Path broken = writePackage(tempDir.resolve("broken"));
+        Files.createSymbolicLink(broken.resolve("missing.bal"), broken.resolve("deleted.bal"));
+
+        PackageChangePublisher publisher = new PackageChangePublisher(tempDir, SERVICE_PROPERTIES, 2);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> publisher.consume(change -> {
+                }).get(30, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof NoSuchFileException, String.valueOf(e.getCause()));
+        assertTrue(e.getCause().getMessage().endsWith("missing.bal"), e.getCause().getMessage());
+        assertTrue(publisher.awaitTermination(10, TimeUnit.SECONDS));
+        assertFalse(Files.exists(tempDir.resolve(Constants.CACHE_DIR).resolve(Constants.HASH_CACHE)));
+    }
+
+    @Test
+    public void rejectsSecondSubscriber() throws Exception {
+        writePackage(tempDir.resolve("alpha"));
+        Files.writeString(tempDir.resolve(SERVICE_PROPERTIES), "");
+        PackageChangePublisher publisher = new PackageChangePublisher(tempDir, SERVICE_PROPERTIES, 1);
+        List<PackageChange> changes = new ArrayList<>();
+        CompletableFuture<Void> first = publisher.consume(changes::add);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> publisher.consume(change -> {
+                }).get(30, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException, String.valueOf(e.getCause()));
+        first.get(30, TimeUnit.SECONDS);
+        assertEquals(1, changes.size());
+    }
+
+    private static Path writePackage(Path packageDir) throws IOException {
+        Files.createDirectories(packageDir);
+        Files.writeString(packageDir.resolve("Ballerina.toml"), "[package]\nname = \"" + packageDir.getFileName()
+                + "\"\n");
+        Files.writeString(packageDir.resolve("main.bal"), "public function main() {\n}\n");
+        return packageDir;
+    }
+
+    /**
+     * Subscriber which leaves the requests to the test.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<PackageChange> {
+        final BlockingQueue<PackageChange> changes = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final CompletableFuture<Flow.Subscription> subscribed = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscribed.complete(subscription);
+        }
+
+        @Override
+        public void onNext(PackageChange change) {
+            changes.add(change);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+
+        Flow.Subscription subscription() throws Exception {
+            return subscribed.get(30, TimeUnit.SECONDS);
+        }
+    }
+}
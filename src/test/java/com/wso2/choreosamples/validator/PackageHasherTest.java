@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PackageHasherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void matchesConcatenatedMd5() throws Exception {
+        List<File> files = writePackage(tempDir.resolve("large"), 0);
+        assertEquals(baselineMd5(files), PackageHasher.generateHashString(files, FingerprintAlgorithms.MD5));
+    }
+
+    @Test
+    public void matchesConcatenatedMd5ReadingAhead() throws Exception {
+        List<File> files = writePackage(tempDir.resolve("wide"), PackageHasher.READ_AHEAD_FILE_THRESHOLD);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String hash = pool.submit(() -> PackageHasher.generateHashString(files, FingerprintAlgorithms.MD5)).get();
+            assertEquals(baselineMd5(files), hash);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void readAheadSharesBoundedBuffers() throws Exception {
+        List<List<File>> packages = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            packages.add(writePackage(tempDir.resolve("wide-" + i), PackageHasher.READ_AHEAD_FILE_THRESHOLD));
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            int buffers = 0;
+            for (int run = 0; run < 2; run++) {
+                List<String> hashes = pool.submit(() -> packages.parallelStream()
+                        .map(files -> {
+                            try {
+                                return PackageHasher.generateHashString(files, FingerprintAlgorithms.MD5);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toList())).get();
+                for (int i = 0; i < packages.size(); i++) {
+                    assertEquals(baselineMd5(packages.get(i)), hashes.get(i));
+                }
+                if (run == 0) {
+                    buffers = PackageHasher.readAheadBufferCount();
+                } else {
+                    // The second run only reuses the buffers of the first one.
+                    assertEquals(buffers, PackageHasher.readAheadBufferCount());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void readAheadFailsOnMissingFile() throws Exception {
+        List<File> files = writePackage(tempDir.resolve("wide"), PackageHasher.READ_AHEAD_FILE_THRESHOLD);
+        files.add(PackageHasher.READ_AHEAD_FILE_THRESHOLD / 2, tempDir.resolve("wide/missing.bal").toFile());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Throwable failure = assertThrows(ExecutionException.class, () -> pool.submit(
+                    () -> PackageHasher.generateHashString(files, FingerprintAlgorithms.MD5)).get());
+            while (failure != null && !(failure instanceof NoSuchFileException)) {
+                failure = failure.getCause();
+            }
+            assertNotNull(failure);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Write a package with an empty file, files around the buffer size and files around the memory map threshold,
+     * followed by the given number of small files.
+     */
+    private static List<File> writePackage(Path packageDir, int smallFiles) throws Exception {
+        Files.createDirectories(packageDir);
+        Random random = new Random(42);
+        List<File> files = new ArrayList<>();
+        int[] sizes = {0, 1, 64 * 1024, 64 * 1024 + 1, (int) PackageHasher.MEMORY_MAP_THRESHOLD,
+                (int) PackageHasher.MEMORY_MAP_THRESHOLD + 3 * 1024 * 1024 + 7};
+        for (int i = 0; i < sizes.length; i++) {
+            files.add(write(packageDir.resolve("sized-" + i + ".bin"), sizes[i], random));
+        }
+        for (int i = 0; i < smallFiles; i++) {
+            files.add(write(packageDir.resolve("small-" + i + ".bal"), 100 + random.nextInt(4096), random));
+        }
+        return files;
+    }
+
+    private static File write(Path file, int size, Random random) throws Exception {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        Files.write(file, content);
+        return file.toFile();
+    }
+
+    /**
+     * MD5 of the concatenated package files, as the package hash was originally computed.
+     */
+    private static String baselineMd5(List<File> files) throws Exception {
+        Vector<InputStream> streams = new Vector<>();
+        try {
+            for (File file : files) {
+                streams.add(new FileInputStream(file));
+            }
+            return DigestUtils.md5Hex(new SequenceInputStream(streams.elements()));
+        } finally {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+        }
+    }
+}
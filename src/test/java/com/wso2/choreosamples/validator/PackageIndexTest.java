@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static com.wso2.choreosamples.validator.Constants.SERVICE_PROPERTIES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackageIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void survivesUpdateHashes() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        TestProjects.backdate(project);
+        Files.writeString(project.resolve(SERVICE_PROPERTIES), "");
+        PackageIndex index = PackageIndex.load(project);
+        List<String> packageDirs = index.getPackageDirs();
+
+        ChangeDetector changeDetector = new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1);
+        changeDetector.updateHashes(SERVICE_PROPERTIES, packageDirs);
+        changeDetector.appendHashes(SERVICE_PROPERTIES, packageDirs.subList(0, 1));
+        changeDetector.updateHashes(SERVICE_PROPERTIES, packageDirs);
+        Files.writeString(project.resolve("README.md"), "# Samples\n");
+
+        assertSame(index, PackageIndex.load(project));
+    }
+
+    @Test
+    public void detectsNewTopLevelPackage() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        PackageIndex index = PackageIndex.load(project);
+        Path newPackage = Files.createDirectory(project.resolve("echo"));
+        Files.writeString(newPackage.resolve(BALLERINA_TOML), "[package]\norg = \"choreo\"\nname = \"echo\"\n");
+
+        PackageIndex reloaded = PackageIndex.load(project);
+        assertNotSame(index, reloaded);
+        assertTrue(reloaded.getPackageDirs().contains(newPackage.toString()));
+        assertEquals(index.getPackageDirs().size() + 1, reloaded.getPackageDirs().size());
+    }
+
+    @Test
+    public void rescansDirectoryModifiedWithinRacyWindow() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        Path tools = project.resolve("tools");
+        PackageIndex index = PackageIndex.load(project);
+        FileTime scannedTime = Files.getLastModifiedTime(tools);
+
+        // A package added within the timestamp granularity of the walk leaves the directory time as it was.
+        Path newPackage = Files.createDirectory(tools.resolve("lint"));
+        Files.writeString(newPackage.resolve(BALLERINA_TOML), "[package]\norg = \"choreo\"\nname = \"lint\"\n");
+        Files.setLastModifiedTime(tools, scannedTime);
+
+        PackageIndex reloaded = PackageIndex.load(project);
+        assertNotSame(index, reloaded);
+        assertTrue(reloaded.getPackageDirs().contains(newPackage.toString()));
+    }
+
+    @Test
+    public void streamsPackagesFromWalkAndIndex() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        TestProjects.backdate(project);
+        List<String> walked = new ArrayList<>();
+        PackageIndex.forEachPackage(project, walked::add);
+        PackageIndex index = PackageIndex.load(project);
+        Collections.sort(walked);
+        assertEquals(index.getPackageDirs(), walked);
+
+        List<String> streamed = new ArrayList<>();
+        PackageIndex.forEachPackage(project, streamed::add);
+        assertEquals(index.getPackageDirs(), streamed);
+        assertSame(index, PackageIndex.load(project));
+    }
+
+    @Test
+    public void stopsStreamingWhenConsumerDeclines() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        List<String> streamed = new ArrayList<>();
+        PackageIndex.forEachPackage(project, packageDir -> {
+            streamed.add(packageDir);
+            return false;
+        });
+
+        assertEquals(1, streamed.size());
+        assertEquals(4, PackageIndex.load(project).getPackageDirs().size());
+    }
+
+    @Test
+    public void skipsHiddenAndBuildDirectories() throws Exception {
+        Path project = TestProjects.copy("dependency-graph", tempDir);
+        List<String> packageDirs = PackageIndex.scan(project).getPackageDirs();
+        for (String ignored : new String[]{".git/hooks", "target/bin", "node_modules/greeter", "tools/target"}) {
+            Path dir = Files.createDirectories(project.resolve(ignored));
+            Files.writeString(dir.resolve(BALLERINA_TOML), "[package]\norg = \"choreo\"\nname = \"ignored\"\n");
+        }
+
+        assertEquals(packageDirs, PackageIndex.scan(project).getPackageDirs());
+    }
+}
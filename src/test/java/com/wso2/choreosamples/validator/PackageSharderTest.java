@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackageSharderTest {
+
+    private static final String SERVICE_PROPERTIES = "service.properties";
+    private static final int SHARD_COUNT = 3;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void assignsEveryPackageToOneShard() throws Exception {
+        Path project = TestProjects.copy("sharded-project", tempDir);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+
+        List<List<String>> assignment = PackageSharder.assign(project, packageDirs, SHARD_COUNT);
+        assertEquals(assignment, PackageSharder.assign(project, packageDirs, SHARD_COUNT));
+        List<String> assigned = new ArrayList<>();
+        for (List<String> shard : assignment) {
+            assertFalse(shard.isEmpty());
+            assertTrue(packageDirs.containsAll(shard));
+            assigned.addAll(shard);
+        }
+        Collections.sort(assigned);
+        List<String> expected = new ArrayList<>(packageDirs);
+        Collections.sort(expected);
+        assertEquals(expected, assigned);
+    }
+
+    @Test
+    public void mergesShardsIntoSameHashesAsSingleRun() throws Exception {
+        Path single = TestProjects.copyHashed("sharded-project", tempDir.resolve("single"), SERVICE_PROPERTIES);
+
+        Path sharded = TestProjects.copy("sharded-project", tempDir.resolve("sharded"));
+        // The entry of a package deleted since the last run.
+        Files.writeString(sharded.resolve(SERVICE_PROPERTIES), "removed=d41d8cd98f00b204e9800998ecf8427e\n");
+        Path partialsDir = tempDir.resolve("partials");
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            PackageSharder.runShard(sharded, Collections.singletonList(SERVICE_PROPERTIES), i, SHARD_COUNT,
+                    partialsDir, 1);
+        }
+        assertEquals(6, PackageSharder.mergeShards(sharded, SERVICE_PROPERTIES, partialsDir));
+
+        assertEquals(ManifestStore.load(single.resolve(SERVICE_PROPERTIES)).getEntries(),
+                ManifestStore.load(sharded.resolve(SERVICE_PROPERTIES)).getEntries());
+        assertEquals(Collections.emptyList(), new ChangeDetector(sharded,
+                Collections.singletonList(SERVICE_PROPERTIES), 1).detect().getUpdatedPackages(SERVICE_PROPERTIES));
+    }
+
+    @Test
+    public void mergesShardsRunAsSeparateProcesses() throws Exception {
+        Path single = TestProjects.copyHashed("sharded-project", tempDir.resolve("single"), SERVICE_PROPERTIES);
+
+        Path sharded = TestProjects.copy("sharded-project", tempDir.resolve("sharded"));
+        Files.writeString(sharded.resolve(SERVICE_PROPERTIES), "");
+        Path partialsDir = tempDir.resolve("partials");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ValidatorCli.class.getName(), "shard", sharded.toString(), "--index", Integer.toString(i),
+                    "--count", Integer.toString(SHARD_COUNT), "--output", partialsDir.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(tempDir.resolve("shard-" + i + ".log").toFile())
+                    .start());
+        }
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            assertTrue(workers.get(i).waitFor(60, TimeUnit.SECONDS), "shard " + i + " timed out");
+            assertEquals(0, workers.get(i).exitValue(), Files.readString(tempDir.resolve("shard-" + i + ".log")));
+        }
+        assertEquals(6, PackageSharder.mergeShards(sharded, SERVICE_PROPERTIES, partialsDir));
+
+        assertEquals(ManifestStore.load(single.resolve(SERVICE_PROPERTIES)).getEntries(),
+                ManifestStore.load(sharded.resolve(SERVICE_PROPERTIES)).getEntries());
+        assertEquals(Collections.emptyList(), new ChangeDetector(sharded,
+                Collections.singletonList(SERVICE_PROPERTIES), 1).detect().getUpdatedPackages(SERVICE_PROPERTIES));
+    }
+
+    @Test
+    public void rejectsMergeWithMissingShard() throws Exception {
+        Path project = TestProjects.copy("sharded-project", tempDir);
+        Files.writeString(project.resolve(SERVICE_PROPERTIES), "");
+        Path partialsDir = tempDir.resolve("partials");
+        for (int i = 0; i < SHARD_COUNT - 1; i++) {
+            PackageSharder.runShard(project, Collections.singletonList(SERVICE_PROPERTIES), i, SHARD_COUNT,
+                    partialsDir, 1);
+        }
+
+        assertThrows(ValidatorException.class,
+                () -> PackageSharder.mergeShards(project, SERVICE_PROPERTIES, partialsDir));
+        assertEquals("", Files.readString(project.resolve(SERVICE_PROPERTIES)));
+    }
+
+    @Test
+    public void assignsFewerPackagesThanShards() throws Exception {
+        Path project = TestProjects.copy("sharded-project", tempDir);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+
+        List<List<String>> assignment = PackageSharder.assign(project, packageDirs, packageDirs.size() + 2);
+        assertEquals(packageDirs.size() + 2, assignment.size());
+        List<String> assigned = new ArrayList<>();
+        assignment.forEach(assigned::addAll);
+        Collections.sort(assigned);
+        List<String> expected = new ArrayList<>(packageDirs);
+        Collections.sort(expected);
+        assertEquals(expected, assigned);
+        assertThrows(IllegalArgumentException.class, () -> PackageSharder.assign(project, packageDirs, 0));
+    }
+}
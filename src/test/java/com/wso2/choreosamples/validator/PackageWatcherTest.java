@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PackageWatcherTest {
+
+    private static final String SERVICE_PROPERTIES = "service.properties";
+    private static final long DEBOUNCE_MILLIS = 500;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void rehashesOnceBurstOfEditsSettles() throws Exception {
+        Path project = hashedProject();
+        Path mainFile = project.resolve("first").resolve("main.bal");
+        try (PackageWatcher watcher = new PackageWatcher(project, SERVICE_PROPERTIES, DEBOUNCE_MILLIS)) {
+            watcher.start();
+            assertEquals(Collections.emptyList(), watcher.getChangedPackages());
+
+            // Every edit comes well within the quiet period of the previous one, so nothing is flushed yet.
+            for (int i = 0; i < 8; i++) {
+                Files.writeString(mainFile, "public function main() {\n    // edit " + i + "\n}\n");
+                Thread.sleep(DEBOUNCE_MILLIS / 5);
+                assertEquals(Collections.emptyList(), watcher.getChangedPackages());
+            }
+            awaitChangedPackages(watcher, Collections.singletonList(project.resolve("first").toString()));
+
+            Files.writeString(mainFile, "public function main() {\n}\n");
+            awaitChangedPackages(watcher, Collections.emptyList());
+        }
+    }
+
+    @Test
+    public void resetsChangesWhenHashesAreUpdated() throws Exception {
+        Path project = hashedProject();
+        try (PackageWatcher watcher = new PackageWatcher(project, SERVICE_PROPERTIES, DEBOUNCE_MILLIS)) {
+            watcher.start();
+            Files.writeString(project.resolve("second").resolve("main.bal"),
+                    "public function main() {\n    // edit\n}\n");
+            List<String> changed = Collections.singletonList(project.resolve("second").toString());
+            awaitChangedPackages(watcher, changed);
+
+            new ChangeDetector(project, Collections.singletonList(SERVICE_PROPERTIES), 1)
+                    .updateHashes(SERVICE_PROPERTIES, changed);
+            awaitChangedPackages(watcher, Collections.emptyList());
+        }
+    }
+
+    @Test
+    public void givesUpOnPersistentFlushError() throws Exception {
+        Path project = hashedProject();
+        long debounceMillis = 20;
+        List<IOException> errors = new CopyOnWriteArrayList<>();
+        try (PackageWatcher watcher = new PackageWatcher(project, SERVICE_PROPERTIES, debounceMillis, errors::add)) {
+            watcher.start();
+            // The hash cache can't be saved anymore, so every flush fails.
+            Path cacheDir = project.resolve(Constants.CACHE_DIR);
+            List<Path> cacheFiles;
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                cacheFiles = files.collect(Collectors.toList());
+            }
+            for (Path file : cacheFiles) {
+                Files.delete(file);
+            }
+            Files.delete(cacheDir);
+            Files.writeString(cacheDir, "");
+            Files.writeString(project.resolve("first").resolve("main.bal"),
+                    "public function main() {\n    // edit\n}\n");
+
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (errors.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            // Once given up, nothing is retried until the next event.
+            Thread.sleep(debounceMillis * 100);
+            assertEquals(1, errors.size(), errors.toString());
+            assertTrue(errors.get(0).getMessage().contains("after 5 retries"), errors.get(0).getMessage());
+            assertTrue(errors.get(0).getCause() instanceof IOException, String.valueOf(errors.get(0).getCause()));
+        }
+    }
+
+    @Test
+    public void answersCommands() throws Exception {
+        Path project = hashedProject();
+        Files.writeString(project.resolve("first").resolve("main.bal"), "public function main() {\n    // edit\n}\n");
+        try (PackageWatcher watcher = new PackageWatcher(project, SERVICE_PROPERTIES, DEBOUNCE_MILLIS)) {
+            watcher.start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            watcher.serve(new ByteArrayInputStream("ping\nchanged\nstatus\nquit\nping\n"
+                    .getBytes(StandardCharsets.UTF_8)), output);
+            assertEquals(Arrays.asList("pong", project.resolve("first").toString(), ".",
+                    "error unknown command: status"), Arrays.asList(output.toString(StandardCharsets.UTF_8)
+                    .split(System.lineSeparator())));
+        }
+    }
+
+    private Path hashedProject() throws Exception {
+        return TestProjects.copyHashed("watched-project", tempDir, SERVICE_PROPERTIES);
+    }
+
+    private static void awaitChangedPackages(PackageWatcher watcher, List<String> expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!expected.equals(watcher.getChangedPackages()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, watcher.getChangedPackages());
+    }
+}
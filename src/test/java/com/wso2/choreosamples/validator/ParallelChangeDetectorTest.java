@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelChangeDetectorTest {
+
+    private static final String SERVICE_PROPERTIES = "service.properties";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void keepsPackageOrderRegardlessOfCompletionOrder() throws Exception {
+        Path project = TestProjects.copy("parallel-detection", tempDir);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < packageDirs.size(); i += 2) {
+            expected.add(packageDirs.get(i));
+        }
+
+        // Earlier packages take longer, so the checks complete in the reverse order.
+        List<String> changed = ParallelChangeDetector.filterChangedPackages(packageDirs, packageDir -> {
+            int index = packageDirs.indexOf(packageDir);
+            try {
+                Thread.sleep(10L * (packageDirs.size() - index));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return index % 2 == 0;
+        }, 4);
+        assertEquals(expected, changed);
+    }
+
+    @Test
+    public void reportsSameChangesAsSequentialDetection() throws Exception {
+        Path project = TestProjects.copyHashed("parallel-detection", tempDir, SERVICE_PROPERTIES);
+        List<String> manifestNames = Collections.singletonList(SERVICE_PROPERTIES);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+        for (String name : new String[]{"bravo", "echo", "hotel"}) {
+            Files.writeString(project.resolve(name).resolve("main.bal"), "// changed\n");
+        }
+
+        List<String> sequential = new ChangeDetector(project, manifestNames, 1).detect(packageDirs)
+                .getUpdatedPackages(SERVICE_PROPERTIES);
+        assertEquals(List.of(project.resolve("bravo").toString(), project.resolve("echo").toString(),
+                project.resolve("hotel").toString()), sequential);
+        for (int run = 0; run < 5; run++) {
+            assertEquals(sequential, new ChangeDetector(project, manifestNames, 4).detect(packageDirs)
+                    .getUpdatedPackages(SERVICE_PROPERTIES));
+        }
+    }
+
+    @Test
+    public void rethrowsFailureOfPackageCheck() throws Exception {
+        Path project = TestProjects.copy("parallel-detection", tempDir);
+        List<String> packageDirs = PackageIndex.load(project).getPackageDirs();
+        String failing = project.resolve("delta").toString();
+
+        IOException e = assertThrows(IOException.class, () ->
+                ParallelChangeDetector.filterChangedPackages(packageDirs, packageDir -> {
+                    if (packageDir.equals(failing)) {
+                        throw new IOException("Unreadable package " + packageDir);
+                    }
+                    return true;
+                }, 4));
+        assertEquals("Unreadable package " + failing, e.getMessage());
+    }
+}
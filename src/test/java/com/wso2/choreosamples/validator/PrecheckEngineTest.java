@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.wso2.choreosamples.validator.Constants.CACHE_DIR;
+import static com.wso2.choreosamples.validator.Constants.PRECHECK_CACHE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrecheckEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void reusesResultsOfUnchangedPackages() throws Exception {
+        Path project = TestProjects.copy("precheck", tempDir);
+        List<String> packageDirs = packageDirs(project);
+        CountingRule rule = new CountingRule(new PackageMdRule());
+        PrecheckEngine engine = new PrecheckEngine(Collections.singletonList(rule));
+
+        Map<String, List<String>> violations = engine.run(project.toString(), packageDirs, 2).getViolations();
+        assertEquals(Collections.singleton(packageDirs.get(1)), violations.keySet());
+        assertEquals(2, rule.evaluations.getAndSet(0));
+
+        assertEquals(violations, engine.run(project.toString(), packageDirs, 2).getViolations());
+        assertEquals(0, rule.evaluations.getAndSet(0));
+
+        Files.writeString(project.resolve("undocumented").resolve(Constants.PACKAGE_MD), "# Undocumented\n");
+        assertTrue(engine.run(project.toString(), packageDirs, 2).isSuccessful());
+        assertEquals(1, rule.evaluations.get());
+    }
+
+    @Test
+    public void evaluatesAgainForOtherRules() throws Exception {
+        Path project = TestProjects.copy("precheck", tempDir);
+        List<String> packageDirs = packageDirs(project);
+        PrecheckEngine.withDefaultRules().run(project.toString(), packageDirs, 2);
+
+        CountingRule rule = new CountingRule(new ModuleMdRule());
+        Map<String, List<String>> violations = new PrecheckEngine(Collections.singletonList(rule))
+                .run(project.toString(), packageDirs, 2).getViolations();
+        assertEquals(2, rule.evaluations.get());
+        assertEquals(Collections.singletonList(Constants.MODULE_MD + " doesn't exist in module util in package "
+                + packageDirs.get(1)), violations.get(packageDirs.get(1)));
+    }
+
+    @Test
+    public void keepsOnlyResultsOfLastRun() throws Exception {
+        Path project = TestProjects.copy("precheck", tempDir);
+        List<String> packageDirs = packageDirs(project);
+        PrecheckEngine engine = PrecheckEngine.withDefaultRules();
+        engine.run(project.toString(), packageDirs, 2);
+        engine.run(project.toString(), packageDirs.subList(0, 1), 2);
+
+        List<String> cachedPackages = Files.readAllLines(project.resolve(CACHE_DIR).resolve(PRECHECK_CACHE)).stream()
+                .filter(line -> line.startsWith("package ")).collect(Collectors.toList());
+        assertEquals(1, cachedPackages.size());
+    }
+
+    private static List<String> packageDirs(Path project) {
+        return Arrays.asList(project.resolve("documented").toString(), project.resolve("undocumented").toString());
+    }
+
+    /**
+     * Counts the evaluations of a rule.
+     */
+    private static class CountingRule implements PrecheckRule {
+        private final PrecheckRule rule;
+        private final AtomicInteger evaluations = new AtomicInteger();
+
+        CountingRule(PrecheckRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public String getName() {
+            return rule.getName();
+        }
+
+        @Override
+        public List<String> check(PackageSnapshot snapshot) throws IOException {
+            evaluations.incrementAndGet();
+            return rule.check(snapshot);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class SemanticFingerprintTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void ignoresReformattedStructuredFiles() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        String semanticHash = CommonUtils.generateHashString(packageDir.toString(),
+                FingerprintAlgorithms.XXH64_SEMANTIC);
+        String rawHash = CommonUtils.generateHashString(packageDir.toString(), FingerprintAlgorithms.XXH64);
+
+        Files.writeString(packageDir.resolve("Config.properties"), "# defaults\ngreeting = hello\nport = 9090\n");
+
+        assertEquals(semanticHash, CommonUtils.generateHashString(packageDir.toString(),
+                FingerprintAlgorithms.XXH64_SEMANTIC));
+        assertNotEquals(rawHash, CommonUtils.generateHashString(packageDir.toString(), FingerprintAlgorithms.XXH64));
+    }
+
+    @Test
+    public void incrementalHashMatchesFullHash() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        String expected = CommonUtils.generateHashString(packageDir.toString(), FingerprintAlgorithms.XXH64_SEMANTIC);
+
+        FileStatCache cache = FileStatCache.load(tempDir);
+        assertEquals(expected, IncrementalHasher.generateHashString(packageDir.toString(), cache,
+                FingerprintAlgorithms.XXH64_SEMANTIC));
+        assertEquals(expected, IncrementalHasher.generateHashString(packageDir.toString(), cache,
+                FingerprintAlgorithms.XXH64_SEMANTIC));
+    }
+
+    @Test
+    public void dropsCanonicalDigestsOfReplacedFiles() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        FileStatCache cache = FileStatCache.load(tempDir);
+        IncrementalHasher.generateHashString(packageDir.toString(), cache, FingerprintAlgorithms.XXH64_SEMANTIC);
+        cache.save();
+        int memoized = SemanticFingerprint.getCanonicalDigests().size();
+
+        for (int port = 9091; port < 9094; port++) {
+            Files.writeString(packageDir.resolve("Config.properties"), "port=" + port + "\ngreeting=hello\n");
+            IncrementalHasher.generateHashString(packageDir.toString(), cache, FingerprintAlgorithms.XXH64_SEMANTIC);
+            cache.save();
+        }
+
+        // Only the digest of the current version of the file is kept.
+        assertEquals(memoized, SemanticFingerprint.getCanonicalDigests().size());
+    }
+
+    @Test
+    public void hashesEveryYamlDocument() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        Path spec = packageDir.resolve("openapi.yaml");
+        Files.writeString(spec, "openapi: 3.0.1\n---\nkind: Service\nport: 9090\n");
+        String hash = semanticHash(packageDir);
+
+        Files.writeString(spec, "openapi:   3.0.1\n---\n# reformatted\nport: 9090\nkind: Service\n");
+        assertEquals(hash, semanticHash(packageDir));
+        Files.writeString(spec, "openapi: 3.0.1\n---\nkind: Service\nport: 9091\n");
+        assertNotEquals(hash, semanticHash(packageDir));
+        // Two documents are not the same as one document holding both.
+        Files.writeString(spec, "- openapi: 3.0.1\n- kind: Service\n  port: 9090\n");
+        assertNotEquals(hash, semanticHash(packageDir));
+    }
+
+    @Test
+    public void ignoresReorderedKeys() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        Files.writeString(packageDir.resolve("Config.toml"), "[greeter]\nport = 9090\ngreeting = \"hello\"\n");
+        Files.writeString(packageDir.resolve("config.json"), "{\"port\": 9090, \"tags\": [\"a\", \"b\"]}");
+        String hash = semanticHash(packageDir);
+
+        Files.writeString(packageDir.resolve("Config.toml"),
+                "[greeter]\ngreeting = \"hello\"  # default\nport = 9090\n");
+        Files.writeString(packageDir.resolve("config.json"), "{\n  \"tags\": [\"a\", \"b\"],\n  \"port\": 9090\n}\n");
+        assertEquals(hash, semanticHash(packageDir));
+
+        // The order of array elements is meaningful.
+        Files.writeString(packageDir.resolve("config.json"), "{\"port\": 9090, \"tags\": [\"b\", \"a\"]}");
+        assertNotEquals(hash, semanticHash(packageDir));
+    }
+
+    @Test
+    public void keepsIntegersApartFromFloats() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        Path config = packageDir.resolve("Config.toml");
+        Files.writeString(config, "timeout = 1.50\nretries = 1\n");
+        String hash = semanticHash(packageDir);
+
+        Files.writeString(config, "timeout = 1.5\nretries = 1\n");
+        assertEquals(hash, semanticHash(packageDir));
+        Files.writeString(config, "timeout = 1.5\nretries = 1.0\n");
+        assertNotEquals(hash, semanticHash(packageDir));
+        Files.writeString(config, "timeout = 1.5\nretries = \"1\"\n");
+        assertNotEquals(hash, semanticHash(packageDir));
+    }
+
+    @Test
+    public void hashesUnparseableFileByContent() throws Exception {
+        Path packageDir = writePackage(tempDir.resolve("greeter"));
+        Path broken = packageDir.resolve("broken.json");
+        Files.writeString(broken, "{\"port\": ");
+        String hash = semanticHash(packageDir);
+
+        assertEquals(hash, semanticHash(packageDir));
+        Files.writeString(broken, "{\"port\":  ");
+        assertNotEquals(hash, semanticHash(packageDir));
+    }
+
+    private static String semanticHash(Path packageDir) throws Exception {
+        return CommonUtils.generateHashString(packageDir.toString(), FingerprintAlgorithms.XXH64_SEMANTIC);
+    }
+
+    private static Path writePackage(Path packageDir) throws Exception {
+        Files.createDirectories(packageDir);
+        Files.writeString(packageDir.resolve("main.bal"), "public function main() {\n}\n");
+        Files.writeString(packageDir.resolve("Config.properties"), "port=9090\ngreeting=hello\n");
+        return packageDir;
+    }
+}
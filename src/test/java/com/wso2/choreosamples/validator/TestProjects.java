@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+/**
+ * Copies the fixture projects of the test resources into a scratch directory, since the validator writes its caches
+ * into the project.
+ */
+final class TestProjects {
+
+    private TestProjects() {
+    }
+
+    /**
+     * Copy a fixture project.
+     *
+     * @param fixture   name of the fixture directory in the test resources
+     * @param targetDir directory to copy the project into
+     * @return the copied project directory
+     * @throws IOException if an error occurred while copying the project
+     */
+    static Path copy(String fixture, Path targetDir) throws IOException {
+        URL resource = TestProjects.class.getResource("/" + fixture);
+        if (resource == null) {
+            throw new IOException("Unknown fixture " + fixture);
+        }
+        Path source;
+        try {
+            source = Paths.get(resource.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid fixture " + fixture, e);
+        }
+        Path target = targetDir.resolve(fixture);
+        try (Stream<Path> paths = Files.walk(source)) {
+            paths.forEach(path -> {
+                try {
+                    Path copy = target.resolve(source.relativize(path).toString());
+                    if (Files.isDirectory(path)) {
+                        Files.createDirectories(copy);
+                    } else {
+                        Files.copy(path, copy);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return target;
+    }
+
+    /**
+     * Copy a fixture project and record the hashes of all of its packages in a new hash properties file, as if the
+     * project had been validated before.
+     *
+     * @param fixture      name of the fixture directory in the test resources
+     * @param targetDir    directory to copy the project into
+     * @param manifestName name of the hash properties file, e.g. service.properties
+     * @return the copied project directory
+     * @throws IOException if an error occurred while copying or hashing the project
+     */
+    static Path copyHashed(String fixture, Path targetDir, String manifestName) throws IOException {
+        Path project = copy(fixture, targetDir);
+        Files.writeString(project.resolve(manifestName), "");
+        new ChangeDetector(project, Collections.singletonList(manifestName), 1)
+                .updateHashes(manifestName, PackageIndex.load(project).getPackageDirs());
+        return project;
+    }
+
+    /**
+     * Set the modification time of every directory of a project to an hour ago, out of the racy window of the
+     * caches, as if the project had been checked out well before the run.
+     *
+     * @param project project directory
+     * @throws IOException if an error occurred while updating the directories
+     */
+    static void backdate(Path project) throws IOException {
+        FileTime anHourAgo = FileTime.fromMillis(System.currentTimeMillis() - 3600_000L);
+        try (Stream<Path> paths = Files.walk(project)) {
+            for (Path dir : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                Files.setLastModifiedTime(dir, anHourAgo);
+            }
+        }
+    }
+}
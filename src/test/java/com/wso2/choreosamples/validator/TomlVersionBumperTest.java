@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Set;
+
+import static com.wso2.choreosamples.validator.Constants.BALLERINA_TOML;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TomlVersionBumperTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void preservesFormattingOutsideVersion() throws Exception {
+        Path packageDir = TestProjects.copy("version-bump", tempDir).resolve("formatted");
+        String original = Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(packageDir.resolve(BALLERINA_TOML), permissions);
+
+        TomlVersionBumper.VersionBump bump = TomlVersionBumper.bumpVersion(packageDir.toString());
+
+        assertEquals("0.1.9", bump.getOldVersion());
+        assertEquals("0.1.10", bump.getNewVersion());
+        // Dependency versions and every comment, space and line stay as they were.
+        assertEquals(original.replace("version   =   \"0.1.9\"   #", "version   =   \"0.1.10\"   #"),
+                Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8));
+        assertEquals(List.of(BALLERINA_TOML), List.of(packageDir.toFile().list()));
+        assertEquals(permissions, Files.getPosixFilePermissions(packageDir.resolve(BALLERINA_TOML)));
+    }
+
+    @Test
+    public void bumpsDottedVersionKey() throws Exception {
+        Path packageDir = TestProjects.copy("version-bump", tempDir).resolve("dotted");
+        String original = Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8);
+
+        assertEquals("2.0.8", TomlVersionBumper.bumpVersion(packageDir.toString()).getNewVersion());
+        assertEquals(original.replace("'2.0.7'", "'2.0.8'"),
+                Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void bumpsQuotedVersionKey() throws Exception {
+        Path packageDir = TestProjects.copy("version-bump", tempDir).resolve("quoted");
+        String original = Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8);
+
+        assertEquals("1.4.1", TomlVersionBumper.bumpVersion(packageDir.toString()).getNewVersion());
+        assertEquals(original.replace("\"1.4.0\"", "\"1.4.1\""),
+                Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void bumpsRepeatedPackageOnce() throws Exception {
+        Path packageDir = TestProjects.copy("version-bump", tempDir).resolve("quoted");
+        List<String> packageDirs = List.of(packageDir.toString(), packageDir.resolve(".").toString(),
+                packageDir.toString());
+
+        List<TomlVersionBumper.VersionBump> bumps = TomlVersionBumper.bumpVersions(packageDirs, false, 3);
+
+        assertEquals(3, bumps.size());
+        for (TomlVersionBumper.VersionBump bump : bumps) {
+            assertEquals("1.4.1", bump.getNewVersion());
+        }
+        assertTrue(Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8).contains("\"1.4.1\""));
+        assertEquals(List.of(BALLERINA_TOML), List.of(packageDir.toFile().list()));
+    }
+
+    @Test
+    public void leavesInvalidVersionUntouched() throws Exception {
+        Path packageDir = TestProjects.copy("version-bump", tempDir).resolve("quoted");
+        String content = "[package]\norg = \"choreo\"\nname = \"quoted\"\nversion = \"1.4\"\n";
+        Files.writeString(packageDir.resolve(BALLERINA_TOML), content);
+
+        assertThrows(ValidatorException.class, () -> TomlVersionBumper.bumpVersion(packageDir.toString()));
+        assertEquals(content, Files.readString(packageDir.resolve(BALLERINA_TOML), StandardCharsets.UTF_8));
+        assertEquals(List.of(BALLERINA_TOML), List.of(packageDir.toFile().list()));
+    }
+}
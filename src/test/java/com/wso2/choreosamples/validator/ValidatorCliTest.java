@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValidatorCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    public void rejectsInvalidUsage() throws Exception {
+        Path project = TestProjects.copy("cli-project", tempDir);
+        assertEquals(2, run());
+        assertEquals(2, run("unknown", project.toString()));
+        assertEquals(2, run("detect"));
+        assertEquals(2, run("detect", project.toString(), "--manifest"));
+        assertEquals(2, run("detect", project.toString(), "--parallelism", "many"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Invalid value of --parallelism: many"));
+        assertEquals(2, run("watch", project.toString(), "--debounce", "soon"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Invalid value of --debounce: soon"));
+    }
+
+    @Test
+    public void detectsPackagesUntilHashesAreUpdated() throws Exception {
+        Path project = TestProjects.copy("cli-project", tempDir);
+        String hello = project.resolve("hello").toString();
+        String world = project.resolve("world").toString();
+
+        assertEquals(0, run("detect", project.toString()));
+        assertEquals(Arrays.asList(hello, world), outputLines());
+
+        assertEquals(0, run("update-hashes", project.toString()));
+        assertEquals(0, run("detect", project.toString()));
+        assertEquals(Collections.emptyList(), outputLines());
+
+        Files.writeString(project.resolve("world").resolve("main.bal"), "public function main() {\n    // edit\n}\n");
+        assertEquals(0, run("detect", project.toString(), "--parallelism", "2"));
+        assertEquals(Collections.singletonList(world), outputLines());
+    }
+
+    @Test
+    public void failsPrecheckOfUndocumentedPackage() throws Exception {
+        Path project = TestProjects.copy("cli-project", tempDir);
+        assertEquals(0, run("precheck", project.toString(), "hello"));
+        assertEquals(1, run("precheck", project.toString()));
+        assertEquals(Constants.PACKAGE_MD + " doesn't exist in package " + project.resolve("world"),
+                err.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    private int run(String... args) {
+        out.reset();
+        err.reset();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            return ValidatorCli.run(args);
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    private List<String> outputLines() {
+        String output = out.toString(StandardCharsets.UTF_8);
+        return output.isEmpty() ? Collections.emptyList() : Arrays.asList(output.split(System.lineSeparator()));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.wso2.choreosamples.validator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.swagger.v3.core.util.Json;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValidatorMetricsTest {
+
+    private static final String SERVICE_PROPERTIES = "service.properties";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void recordsPhasesAndCountersOfDetection() throws Exception {
+        Path project = TestProjects.copyHashed("parallel-detection", tempDir, SERVICE_PROPERTIES);
+        Files.writeString(project.resolve("bravo").resolve("main.bal"), "// changed\n");
+        Files.writeString(project.resolve("echo").resolve("main.bal"), "// changed\n");
+
+        // Metrics are switched on when the JVM starts, so the run has a JVM of its own. Every file was written within
+        // the racy window of the cache, so every file is read again.
+        JsonNode metrics = runWithMetrics("detect", project.toString(), "--manifest", SERVICE_PROPERTIES);
+        JsonNode counters = metrics.get("counters");
+        assertEquals(9, counters.get("directories_visited").asLong());
+        assertEquals(16, counters.get("files_visited").asLong());
+        assertEquals(16, counters.get("cache_misses").asLong());
+        assertEquals(0, counters.get("cache_hits").asLong());
+        assertEquals(2, counters.get("packages_changed").asLong());
+        assertTrue(counters.get("bytes_hashed").asLong() > 0);
+        JsonNode phases = metrics.get("phases");
+        assertEquals(1, phases.get("discovery").get("count").asLong());
+        assertEquals(1, phases.get("change_detection").get("count").asLong());
+        assertEquals(8, phases.get("hashing").get("count").asLong());
+        assertEquals(0, phases.get("toml_bump").get("count").asLong());
+    }
+
+    @Test
+    public void doesNotCountSpecDetectionAsHashing() throws Exception {
+        Path project = TestProjects.copy("parallel-detection", tempDir);
+        Files.writeString(project.resolve("alpha").resolve("config.json"), "{\"port\": 9090}\n");
+        Files.writeString(project.resolve("bravo").resolve("values.yaml"), "replicas: 2\n");
+
+        JsonNode counters = runWithMetrics("validate", project.toString()).get("counters");
+        assertEquals(0, counters.get("files_visited").asLong());
+        assertEquals(0, counters.get("bytes_hashed").asLong());
+    }
+
+    private JsonNode runWithMetrics(String... args) throws Exception {
+        Path output = tempDir.resolve("metrics.json");
+        Path log = tempDir.resolve("metrics.log");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String[] command = new String[args.length + 6];
+        command[0] = java;
+        command[1] = "-D" + ValidatorMetrics.ENABLED_PROPERTY + "=true";
+        command[2] = "-D" + ValidatorMetrics.OUTPUT_PROPERTY + "=" + output;
+        command[3] = "-cp";
+        command[4] = System.getProperty("java.class.path");
+        command[5] = ValidatorCli.class.getName();
+        System.arraycopy(args, 0, command, 6, args.length);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "validator timed out");
+        assertEquals(0, process.exitValue(), Files.readString(log));
+        return Json.mapper().readTree(Files.readString(output));
+    }
+}
@@ -0,0 +1,5 @@
+import greeter.util;
+
+public function main() {
+    util:greet();
+}
@@ -0,0 +1,5 @@
+import ballerina/io;
+
+public function greet() {
+    io:println("Hello");
+}
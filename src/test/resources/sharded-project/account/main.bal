@@ -0,0 +1,6 @@
+public function main() {
+    int value1 = 1;
+    int value2 = 2;
+    int value3 = 3;
+    int value4 = 4;
+}
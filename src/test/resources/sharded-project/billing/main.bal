@@ -0,0 +1,18 @@
+public function main() {
+    int value1 = 1;
+    int value2 = 2;
+    int value3 = 3;
+    int value4 = 4;
+    int value5 = 5;
+    int value6 = 6;
+    int value7 = 7;
+    int value8 = 8;
+    int value9 = 9;
+    int value10 = 10;
+    int value11 = 11;
+    int value12 = 12;
+    int value13 = 13;
+    int value14 = 14;
+    int value15 = 15;
+    int value16 = 16;
+}
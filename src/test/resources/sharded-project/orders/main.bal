@@ -0,0 +1,102 @@
+public function main() {
+    int value1 = 1;
+    int value2 = 2;
+    int value3 = 3;
+    int value4 = 4;
+    int value5 = 5;
+    int value6 = 6;
+    int value7 = 7;
+    int value8 = 8;
+    int value9 = 9;
+    int value10 = 10;
+    int value11 = 11;
+    int value12 = 12;
+    int value13 = 13;
+    int value14 = 14;
+    int value15 = 15;
+    int value16 = 16;
+    int value17 = 17;
+    int value18 = 18;
+    int value19 = 19;
+    int value20 = 20;
+    int value21 = 21;
+    int value22 = 22;
+    int value23 = 23;
+    int value24 = 24;
+    int value25 = 25;
+    int value26 = 26;
+    int value27 = 27;
+    int value28 = 28;
+    int value29 = 29;
+    int value30 = 30;
+    int value31 = 31;
+    int value32 = 32;
+    int value33 = 33;
+    int value34 = 34;
+    int value35 = 35;
+    int value36 = 36;
+    int value37 = 37;
+    int value38 = 38;
+    int value39 = 39;
+    int value40 = 40;
+    int value41 = 41;
+    int value42 = 42;
+    int value43 = 43;
+    int value44 = 44;
+    int value45 = 45;
+    int value46 = 46;
+    int value47 = 47;
+    int value48 = 48;
+    int value49 = 49;
+    int value50 = 50;
+    int value51 = 51;
+    int value52 = 52;
+    int value53 = 53;
+    int value54 = 54;
+    int value55 = 55;
+    int value56 = 56;
+    int value57 = 57;
+    int value58 = 58;
+    int value59 = 59;
+    int value60 = 60;
+    int value61 = 61;
+    int value62 = 62;
+    int value63 = 63;
+    int value64 = 64;
+    int value65 = 65;
+    int value66 = 66;
+    int value67 = 67;
+    int value68 = 68;
+    int value69 = 69;
+    int value70 = 70;
+    int value71 = 71;
+    int value72 = 72;
+    int value73 = 73;
+    int value74 = 74;
+    int value75 = 75;
+    int value76 = 76;
+    int value77 = 77;
+    int value78 = 78;
+    int value79 = 79;
+    int value80 = 80;
+    int value81 = 81;
+    int value82 = 82;
+    int value83 = 83;
+    int value84 = 84;
+    int value85 = 85;
+    int value86 = 86;
+    int value87 = 87;
+    int value88 = 88;
+    int value89 = 89;
+    int value90 = 90;
+    int value91 = 91;
+    int value92 = 92;
+    int value93 = 93;
+    int value94 = 94;
+    int value95 = 95;
+    int value96 = 96;
+    int value97 = 97;
+    int value98 = 98;
+    int value99 = 99;
+    int value100 = 100;
+}